@@ -0,0 +1,674 @@
+package practice.data;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable, read-optimized snapshot of a YelpStore produced by YelpStore.freeze().
+ *
+ * Businesses are numbered by ordinal: businesses that have been added come first, in the
+ * same order as YelpStore.toString lists them, followed by IDs that only have reviews so far.
+ * The reviews of ordinal i are stored in slots reviewOffsets[i] .. reviewOffsets[i + 1] - 1
+ * of the parallel review arrays, sorted by date. reviewSlots maps the ordinal of a review
+ * (see YelpStore.addReview) to its slot, so the per-user index can find it.
+ *
+ * Review text is the bulk of the data, so it is not kept as Strings. The texts of consecutive
+ * slots are concatenated into blocks of roughly BLOCK_CHARS characters (a large business spans
+ * several blocks) and each block is compressed with Deflater. A block is only inflated when one
+ * of its texts is read, and recently decoded blocks are kept in an approximate LRU cache of
+ * at most CACHED_CHARS characters. A TextReader keeps the block it decoded last, so reading
+ * consecutive slots costs one cache lookup per block rather than per slot.
+ *
+ * A re-freeze keeps the compressed blocks of the previous snapshot whose slots are unchanged,
+ * only the blocks around businesses with new reviews are inflated and compressed again.
+ *
+ * Nothing is modified after construction, so a snapshot can be read by any number of
+ * threads without locking. The block cache is a ConcurrentHashMap, a cache hit takes no
+ * lock; only evicting after a miss is serialized. Businesses are never changed once added (YelpStore copies the
+ * caller's neighborhoods), and user names are looked up in the store's live user map, so
+ * a user added after the freeze gets its name and the snapshot does not copy every user.
+ */
+public final class FrozenStore {
+
+	static final int BLOCK_CHARS = 32 * 1024;
+	static final int CACHED_CHARS = 16 * BLOCK_CHARS;
+
+	private final String[] businessIds;
+	private final JsonObject[] businesses;
+	// names[i] is the name of businesses[i], sorted, so merges compare Strings directly
+	private final String[] names;
+	private final HashMap<String, Integer> ordinals;
+
+	private final int[] reviewOffsets;
+	private final int[] reviewDates;
+	private final byte[] reviewRatings;
+	private final String[] reviewUserIds;
+	private final int[] reviewSlots;
+
+	// text of slot i is block.substring(textEnds[i - 1], textEnds[i]), or from 0 at a block start
+	private final int[] textEnds;
+	private final int[] blockStarts;
+	private final int[] blockLengths;
+	private final byte[][] blocks;
+	private final long rawTextBytes;
+	private final int reusedBlocks;
+	private final BlockCache cache;
+
+	private final Map<String, String> userNames;
+
+	/**
+	 * Constructor. Create an empty snapshot.
+	 */
+	FrozenStore() {
+		businessIds = new String[0];
+		businesses = new JsonObject[0];
+		names = new String[0];
+		ordinals = new HashMap<>();
+		reviewOffsets = new int[1];
+		reviewDates = new int[0];
+		reviewRatings = new byte[0];
+		reviewUserIds = new String[0];
+		reviewSlots = new int[0];
+		textEnds = new int[0];
+		blockStarts = new int[1];
+		blockLengths = new int[0];
+		blocks = new byte[0][];
+		rawTextBytes = 0;
+		reusedBlocks = 0;
+		cache = new BlockCache();
+		userNames = Collections.emptyMap();
+	}
+
+	/**
+	 * Constructor. Merge an older snapshot with a delta of a YelpStore.
+	 * Delta reviews never share a date with a frozen review of the same business,
+	 * YelpStore.addReview drops those the same way its sorted sets do.
+	 * The delta must no longer change while this runs.
+	 * @param base - previous snapshot.
+	 * @param delta - businesses and reviews added since base was built.
+	 * @param userIdMap - the store's user map, kept as is for user names.
+	 */
+	FrozenStore(FrozenStore base, YelpStore.Delta delta, Map<String, String> userIdMap) {
+		Map<String, JsonObject> businessIdMap = delta.businessIdMap;
+		SortedSet<YelpStore.NameObject> businessNameSet = delta.businessNameSet;
+		Map<String, ? extends SortedSet<JsonObject>> reviewMap = delta.reviewMap;
+		JsonArray reviewArray = delta.reviewArray;
+
+		// named businesses: merge base order with the delta, base first on equal names
+		int namedCount = base.businesses.length + businessNameSet.size();
+		ArrayList<String> ids = new ArrayList<>();
+		businesses = new JsonObject[namedCount];
+		names = new String[namedCount];
+		int b = 0;
+		int n = 0;
+		for (YelpStore.NameObject next : businessNameSet) {
+			while (b < base.businesses.length && base.names[b].compareTo(next.getName()) <= 0) {
+				names[n] = base.names[b];
+				businesses[n++] = base.businesses[b];
+				ids.add(base.businessIds[b++]);
+			}
+			names[n] = next.getName();
+			businesses[n++] = businessIdMap.get(next.getBusinessId());
+			ids.add(next.getBusinessId());
+		}
+		while (b < base.businesses.length) {
+			names[n] = base.names[b];
+			businesses[n++] = base.businesses[b];
+			ids.add(base.businessIds[b++]);
+		}
+
+		// review-only IDs that still have no business
+		for (int i = base.businesses.length; i < base.businessIds.length; i++) {
+			if (!businessIdMap.containsKey(base.businessIds[i])) {
+				ids.add(base.businessIds[i]);
+			}
+		}
+		for (String businessId : reviewMap.keySet()) {
+			if (!businessIdMap.containsKey(businessId) && !base.ordinals.containsKey(businessId)) {
+				ids.add(businessId);
+			}
+		}
+
+		businessIds = ids.toArray(new String[ids.size()]);
+		ordinals = new HashMap<>(businessIds.length * 2);
+		for (int i = 0; i < businessIds.length; i++) {
+			ordinals.put(businessIds[i], i);
+		}
+
+		int total = base.reviewDates.length;
+		for (SortedSet<JsonObject> reviewSet : reviewMap.values()) {
+			total += reviewSet.size();
+		}
+		reviewOffsets = new int[businessIds.length + 1];
+		reviewDates = new int[total];
+		reviewRatings = new byte[total];
+		reviewUserIds = new String[total];
+		textEnds = new int[total];
+
+		// ordinals: base reviews keep theirs, delta reviews continue after them
+		reviewSlots = new int[total];
+		int[] baseOrdinals = new int[base.reviewSlots.length];
+		for (int ordinal = 0; ordinal < base.reviewSlots.length; ordinal++) {
+			baseOrdinals[base.reviewSlots[ordinal]] = ordinal;
+		}
+		IdentityHashMap<JsonElement, Integer> deltaOrdinals = new IdentityHashMap<>(reviewArray.size() * 2);
+		for (int i = 0; i < reviewArray.size(); i++) {
+			deltaOrdinals.put(reviewArray.get(i), base.reviewSlots.length + i);
+		}
+
+		// CSR fill: merge each business's frozen slice with its delta reviews by date.
+		// source remembers where each slot's text comes from: a base slot, or -1 - index in reviewArray
+		int[] source = new int[total];
+		int slot = 0;
+		for (int i = 0; i < businessIds.length; i++) {
+			reviewOffsets[i] = slot;
+			int from = base.reviewStart(businessIds[i]);
+			int to = base.reviewEnd(businessIds[i]);
+			SortedSet<JsonObject> deltaSet = reviewMap.get(businessIds[i]);
+			if (deltaSet != null) {
+				for (JsonObject review : deltaSet) {
+					int date = dateKey(review.get("date").getAsString());
+					while (from < to && base.reviewDates[from] < date) {
+						copyReview(base, baseOrdinals, from++, slot++, source);
+					}
+					int ordinal = deltaOrdinals.get(review);
+					reviewSlots[ordinal] = slot;
+					reviewDates[slot] = date;
+					reviewRatings[slot] = (byte) review.get("rating").getAsInt();
+					reviewUserIds[slot] = review.get("userId").getAsString();
+					source[slot] = -1 - (ordinal - base.reviewSlots.length);
+					slot++;
+				}
+			}
+			while (from < to) {
+				copyReview(base, baseOrdinals, from++, slot++, source);
+			}
+		}
+		reviewOffsets[businessIds.length] = slot;
+
+		ArrayList<Integer> starts = new ArrayList<>();
+		ArrayList<Integer> lengths = new ArrayList<>();
+		ArrayList<byte[]> compressed = new ArrayList<>();
+		StringBuilder pending = new StringBuilder();
+		long rawBytes = 0;
+		int reused = 0;
+		int blockStart = 0;
+
+		// rebuilt blocks are decoded once, without pushing readers' blocks out of the cache
+		TextReader baseTexts = base.textReader(false);
+		slot = 0;
+		while (slot < total) {
+			// a small pending block is merged with the next one rather than left behind
+			int block = pending.length() == 0 || pending.length() >= BLOCK_CHARS / 4 ? base.unchangedBlock(source, slot) : -1;
+			if (block >= 0) {
+				if (slot > blockStart) {
+					rawBytes += addBlock(pending, blockStart, starts, lengths, compressed);
+				}
+				int count = base.blockStarts[block + 1] - base.blockStarts[block];
+				System.arraycopy(base.textEnds, base.blockStarts[block], textEnds, slot, count);
+				starts.add(slot);
+				lengths.add(base.blockLengths[block]);
+				compressed.add(base.blocks[block]);
+				rawBytes += base.blockLengths[block];
+				reused++;
+				slot += count;
+				blockStart = slot;
+				continue;
+			}
+
+			String text = source[slot] >= 0 ? baseTexts.get(source[slot])
+					: reviewArray.get(-1 - source[slot]).getAsJsonObject().get("review").getAsString();
+			textEnds[slot] = pending.append(text).length();
+			slot++;
+			// close the current block once it is big enough, even inside a business
+			if (pending.length() >= BLOCK_CHARS) {
+				rawBytes += addBlock(pending, blockStart, starts, lengths, compressed);
+				blockStart = slot;
+			}
+		}
+		if (slot > blockStart) {
+			rawBytes += addBlock(pending, blockStart, starts, lengths, compressed);
+		}
+		starts.add(slot);
+
+		blockStarts = new int[starts.size()];
+		for (int i = 0; i < blockStarts.length; i++) {
+			blockStarts[i] = starts.get(i);
+		}
+		blockLengths = new int[lengths.size()];
+		for (int i = 0; i < blockLengths.length; i++) {
+			blockLengths[i] = lengths.get(i);
+		}
+		blocks = compressed.toArray(new byte[compressed.size()][]);
+		rawTextBytes = rawBytes;
+		reusedBlocks = reused;
+		cache = new BlockCache();
+
+		userNames = userIdMap;
+	}
+
+	private void copyReview(FrozenStore base, int[] baseOrdinals, int from, int to, int[] source) {
+		reviewSlots[baseOrdinals[from]] = to;
+		reviewDates[to] = base.reviewDates[from];
+		reviewRatings[to] = base.reviewRatings[from];
+		reviewUserIds[to] = base.reviewUserIds[from];
+		source[to] = from;
+	}
+
+	/**
+	 * Check whether one of this snapshot's blocks can be reused as is by a new snapshot.
+	 * @param source - base slot of each new slot, negative for delta reviews.
+	 * @param slot - new slot the block would start at.
+	 * @return the block starting at source[slot] if all its slots follow each other in
+	 * the new snapshot too, -1 otherwise.
+	 */
+	private int unchangedBlock(int[] source, int slot) {
+		if (source[slot] < 0) {
+			return -1;
+		}
+		int block = Arrays.binarySearch(blockStarts, 0, blocks.length, source[slot]);
+		if (block < 0) {
+			return -1;
+		}
+		int count = blockStarts[block + 1] - blockStarts[block];
+		if (slot + count > source.length) {
+			return -1;
+		}
+		for (int i = 1; i < count; i++) {
+			if (source[slot + i] != source[slot] + i) {
+				return -1;
+			}
+		}
+		return block;
+	}
+
+	/**
+	 * Compress the pending text as one block and clear it.
+	 * @return number of uncompressed bytes in the block
+	 */
+	private static int addBlock(StringBuilder pending, int blockStart, List<Integer> starts,
+								List<Integer> lengths, List<byte[]> compressed) {
+		byte[] raw = pending.toString().getBytes(StandardCharsets.UTF_8);
+		pending.setLength(0);
+
+		Deflater deflater = new Deflater();
+		deflater.setInput(raw);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 3 + 64);
+		byte[] buffer = new byte[8192];
+		while (!deflater.finished()) {
+			out.write(buffer, 0, deflater.deflate(buffer));
+		}
+		deflater.end();
+
+		starts.add(blockStart);
+		lengths.add(raw.length);
+		compressed.add(out.toByteArray());
+		return raw.length;
+	}
+
+	/**
+	 * Inflate a block back into its concatenated review texts.
+	 */
+	private String decodeBlock(int block) {
+		Inflater inflater = new Inflater();
+		inflater.setInput(blocks[block]);
+		byte[] raw = new byte[blockLengths[block]];
+		try {
+			int length = 0;
+			while (length < raw.length && !inflater.finished()) {
+				length += inflater.inflate(raw, length, raw.length - length);
+			}
+		} catch (DataFormatException dfe) {
+			// only blocks written by addBlock are ever inflated
+			throw new IllegalStateException(dfe);
+		} finally {
+			inflater.end();
+		}
+		return new String(raw, StandardCharsets.UTF_8);
+	}
+
+	private String getBlock(int block) {
+		String text = cache.lookup(block);
+		if (text == null) {
+			text = decodeBlock(block);
+			cache.store(block, text);
+		}
+		return text;
+	}
+
+	/**
+	 * Number of businesses that have been added, in name order.
+	 * @return business count
+	 */
+	public int getBusinessCount() {
+		return businesses.length;
+	}
+
+	/**
+	 * Number of reviews, including reviews of businesses that have not been added.
+	 * @return review count
+	 */
+	public int getReviewCount() {
+		return reviewDates.length;
+	}
+
+	/**
+	 * @param businessId
+	 * @return true if the business has been added to this snapshot.
+	 */
+	public boolean containsBusiness(String businessId) {
+		Integer ordinal = ordinals.get(businessId);
+		return ordinal != null && ordinal < businesses.length;
+	}
+
+	/**
+	 * @param businessId
+	 * @return the business, or null if it has not been added to this snapshot.
+	 */
+	JsonObject getBusiness(String businessId) {
+		Integer ordinal = ordinals.get(businessId);
+		return ordinal == null || ordinal >= businesses.length ? null : businesses[ordinal];
+	}
+
+	JsonObject getBusiness(int ordinal) {
+		return businesses[ordinal];
+	}
+
+	String getName(int ordinal) {
+		return names[ordinal];
+	}
+
+	/**
+	 * @return number of businesses whose name sorts before or equal to name.
+	 */
+	int countNamesUpTo(String name) {
+		int low = 0;
+		int high = names.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (names[mid].compareTo(name) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	String getBusinessId(int ordinal) {
+		return businessIds[ordinal];
+	}
+
+	/**
+	 * First review slot of a business, or 0 if it has no reviews.
+	 */
+	int reviewStart(String businessId) {
+		Integer ordinal = ordinals.get(businessId);
+		return ordinal == null ? 0 : reviewOffsets[ordinal];
+	}
+
+	/**
+	 * One past the last review slot of a business, or 0 if it has no reviews.
+	 */
+	int reviewEnd(String businessId) {
+		Integer ordinal = ordinals.get(businessId);
+		return ordinal == null ? 0 : reviewOffsets[ordinal + 1];
+	}
+
+	int getReviewDate(int slot) {
+		return reviewDates[slot];
+	}
+
+	int getReviewRating(int slot) {
+		return reviewRatings[slot];
+	}
+
+	String getReviewText(int slot) {
+		int block = blockOf(slot);
+		return text(getBlock(block), block, slot);
+	}
+
+	private int blockOf(int slot) {
+		// blocks are never empty, so blockStarts is strictly increasing
+		int block = Arrays.binarySearch(blockStarts, slot);
+		return block < 0 ? -block - 2 : block;
+	}
+
+	private String text(String decoded, int block, int slot) {
+		int start = slot == blockStarts[block] ? 0 : textEnds[slot - 1];
+		return decoded.substring(start, textEnds[slot]);
+	}
+
+	/**
+	 * @return a reader for review texts that goes through the shared block cache.
+	 */
+	TextReader textReader() {
+		return new TextReader(true);
+	}
+
+	/**
+	 * @param cached - false to decode blocks that are not cached without adding them,
+	 * for one-off reads that would only evict the blocks other readers use.
+	 * @return a reader for review texts.
+	 */
+	TextReader textReader(boolean cached) {
+		return new TextReader(cached);
+	}
+
+	/**
+	 * Reads review texts, keeping the block it decoded last. Reading the slots of one block
+	 * in a row needs no search and no cache lookup. Not thread safe, use one per call.
+	 */
+	final class TextReader {
+		private final boolean cached;
+		private int block = -1;
+		private String decoded;
+
+		private TextReader(boolean cached) {
+			this.cached = cached;
+		}
+
+		String get(int slot) {
+			if (block < 0 || slot < blockStarts[block] || slot >= blockStarts[block + 1]) {
+				block = blockOf(slot);
+				decoded = cached ? getBlock(block) : cache.lookup(block);
+				if (decoded == null) {
+					decoded = decodeBlock(block);
+				}
+			}
+			return text(decoded, block, slot);
+		}
+	}
+
+	/**
+	 * @return size of all review texts in UTF-8, before compression.
+	 */
+	public long getRawTextBytes() {
+		return rawTextBytes;
+	}
+
+	/**
+	 * @return number of compressed review text blocks.
+	 */
+	public int getBlockCount() {
+		return blocks.length;
+	}
+
+	/**
+	 * @return number of blocks taken over from the previous snapshot without compressing them again.
+	 */
+	public int getReusedBlockCount() {
+		return reusedBlocks;
+	}
+
+	/**
+	 * @return size of all compressed review text blocks.
+	 */
+	public long getCompressedTextBytes() {
+		long size = 0;
+		for (byte[] block : blocks) {
+			size += block.length;
+		}
+		return size;
+	}
+
+	String getReviewUserId(int slot) {
+		return reviewUserIds[slot];
+	}
+
+	/**
+	 * Find the business of a review slot with a binary search over the offsets.
+	 */
+	String getReviewBusinessId(int slot) {
+		int low = 0;
+		int high = businessIds.length - 1;
+		// last ordinal whose reviews start at or before slot
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (reviewOffsets[mid] <= slot) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return businessIds[low];
+	}
+
+	/**
+	 * @return number of review ordinals in this snapshot, the next ordinal belongs to the delta.
+	 */
+	int getOrdinalCount() {
+		return reviewSlots.length;
+	}
+
+	int getReviewSlot(int ordinal) {
+		return reviewSlots[ordinal];
+	}
+
+	/**
+	 * @param businessId
+	 * @param date - date key as returned by dateKey.
+	 * @return true if the business already has a frozen review on this date.
+	 */
+	boolean hasReviewOn(String businessId, int date) {
+		int from = reviewStart(businessId);
+		int to = reviewEnd(businessId);
+		return from < to && Arrays.binarySearch(reviewDates, from, to, date) >= 0;
+	}
+
+	/**
+	 * String representation of the snapshot, in the same format as YelpStore.toString.
+	 * User names are the ones the store knows now.
+	 * @return string representation of the snapshot
+	 */
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		TextReader texts = textReader();
+		for (int i = 0; i < businesses.length; i++) {
+			buffer.append(YelpStore.businessToString(businesses[i]));
+			for (int slot = reviewOffsets[i]; slot < reviewOffsets[i + 1]; slot++) {
+				YelpStore.appendReview(buffer, reviewRatings[slot], userNames.get(reviewUserIds[slot]), texts.get(slot));
+			}
+			buffer.append("\n");
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Convert a yyyy-MM-dd date into a sortable yyyyMMdd integer. Dates are parsed the same
+	 * (lenient) way as YelpStore.ReviewComparator, so 2011-13-01 and 2012-01-01 get the same key.
+	 * @param date
+	 * @return date key, or -1 if the date cannot be parsed.
+	 */
+	static int dateKey(String date) {
+		Calendar calendar = Calendar.getInstance();
+		try {
+			calendar.setTime(new SimpleDateFormat("yyyy-MM-dd").parse(date));
+		} catch (ParseException iae) {
+			return -1;
+		}
+		return calendar.get(Calendar.YEAR) * 10000 + (calendar.get(Calendar.MONTH) + 1) * 100
+				+ calendar.get(Calendar.DAY_OF_MONTH);
+	}
+
+	/**
+	 * Convert a date key back into yyyy-MM-dd.
+	 * @param date - date key as returned by dateKey.
+	 * @return formatted date
+	 */
+	static String dateString(int date) {
+		return String.format("%04d-%02d-%02d", date / 10000, date / 100 % 100, date % 100);
+	}
+
+	/**
+	 * Cache of decoded text blocks, shared by all threads reading the snapshot. Lookups take
+	 * no lock. Bounded by the number of decoded characters: a store that goes over the bound
+	 * evicts the blocks used least recently, as far as the approximate use stamps tell, but
+	 * never the block it just stored.
+	 */
+	private static class BlockCache {
+		private final ConcurrentHashMap<Integer, CachedBlock> blocks = new ConcurrentHashMap<>();
+		// advances on every store, hits stamp their block with the current value
+		private final AtomicLong clock = new AtomicLong();
+		private final AtomicLong chars = new AtomicLong();
+
+		String lookup(int block) {
+			CachedBlock cached = blocks.get(block);
+			if (cached == null) {
+				return null;
+			}
+			long now = clock.get();
+			if (cached.used != now) {
+				cached.used = now;
+			}
+			return cached.text;
+		}
+
+		void store(int block, String text) {
+			CachedBlock old = blocks.put(block, new CachedBlock(text, clock.incrementAndGet()));
+			if (chars.addAndGet(text.length() - (old == null ? 0 : old.text.length())) > CACHED_CHARS) {
+				evict(block);
+			}
+		}
+
+		private synchronized void evict(int keep) {
+			while (chars.get() > CACHED_CHARS) {
+				Map.Entry<Integer, CachedBlock> oldest = null;
+				for (Map.Entry<Integer, CachedBlock> entry : blocks.entrySet()) {
+					if (entry.getKey() != keep && (oldest == null || entry.getValue().used < oldest.getValue().used)) {
+						oldest = entry;
+					}
+				}
+				if (oldest == null) {
+					return;
+				}
+				if (blocks.remove(oldest.getKey(), oldest.getValue())) {
+					chars.addAndGet(-oldest.getValue().text.length());
+				}
+			}
+		}
+	}
+
+	private static final class CachedBlock {
+		final String text;
+		volatile long used;
+
+		CachedBlock(String text, long used) {
+			this.text = text;
+			this.used = used;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package practice.data;
+
+import java.util.Arrays;
+
+/**
+ * Reviews written by one user, kept as review ordinals (see YelpStore.addReview) in the
+ * order they were added, together with running aggregates so stats need no scan.
+ *
+ * Per user this costs one HashMap entry, this object, and an int[] that grows by half,
+ * about 100 bytes plus 4-6 bytes per review.
+ */
+class UserReviews {
+
+	private int[] ordinals;
+	private int count;
+	private long ratingSum;
+	private int firstDate;
+	private int lastDate;
+
+	UserReviews() {
+		ordinals = new int[2];
+		firstDate = Integer.MAX_VALUE;
+		lastDate = Integer.MIN_VALUE;
+	}
+
+	/**
+	 * @param ordinal - review ordinal.
+	 * @param rating - rating of the review.
+	 * @param date - date key of the review, see FrozenStore.dateKey.
+	 */
+	void add(int ordinal, int rating, int date) {
+		if (count == ordinals.length) {
+			ordinals = Arrays.copyOf(ordinals, count + (count >> 1) + 1);
+		}
+		ordinals[count++] = ordinal;
+		ratingSum += rating;
+		firstDate = Math.min(firstDate, date);
+		lastDate = Math.max(lastDate, date);
+	}
+
+	int getCount() {
+		return count;
+	}
+
+	int getOrdinal(int i) {
+		return ordinals[i];
+	}
+
+	UserStats toStats(String userId, String name) {
+		if (count == 0) {
+			return new UserStats(userId, name, 0, 0, null, null);
+		}
+		return new UserStats(userId, name, count, (double) ratingSum / count,
+				FrozenStore.dateString(firstDate), FrozenStore.dateString(lastDate));
+	}
+}
@@ -0,0 +1,65 @@
+package practice.data;
+
+/**
+ * Summary of the reviews written by one user, as returned by YelpStore.getUserStats.
+ */
+public class UserStats {
+
+	private final String userId;
+	private final String name;
+	private final int reviewCount;
+	private final double averageRating;
+	private final String firstReviewDate;
+	private final String lastReviewDate;
+
+	UserStats(String userId, String name, int reviewCount, double averageRating,
+			  String firstReviewDate, String lastReviewDate) {
+		this.userId = userId;
+		this.name = name;
+		this.reviewCount = reviewCount;
+		this.averageRating = averageRating;
+		this.firstReviewDate = firstReviewDate;
+		this.lastReviewDate = lastReviewDate;
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	/**
+	 * @return name of the user, or null if the user has not been added yet.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public int getReviewCount() {
+		return reviewCount;
+	}
+
+	/**
+	 * @return mean rating, 0 if the user has no reviews.
+	 */
+	public double getAverageRating() {
+		return averageRating;
+	}
+
+	/**
+	 * @return date of the earliest review as yyyy-MM-dd, or null if the user has no reviews.
+	 */
+	public String getFirstReviewDate() {
+		return firstReviewDate;
+	}
+
+	/**
+	 * @return date of the latest review as yyyy-MM-dd, or null if the user has no reviews.
+	 */
+	public String getLastReviewDate() {
+		return lastReviewDate;
+	}
+
+	public String toString() {
+		return String.format("%s (%s): %d reviews, average %.2f, %s - %s", userId, name == null ? "" : name,
+				reviewCount, averageRating, firstReviewDate, lastReviewDate);
+	}
+}
@@ -0,0 +1,301 @@
+package practice.data;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Deterministic generator of synthetic Yelp data in the line-delimited format of
+ * yelp_academic_dataset.json. The same seed and size always produce the same lines.
+ *
+ * The data is skewed the way the real dataset is:
+ * - reviews per business follow a Zipf distribution, a few businesses get most reviews.
+ * - business names come from a pool much smaller than the number of businesses, so names repeat.
+ * - some users are never written, their reviews show up without a name.
+ * - some reviews are for business IDs that are never written.
+ * - some businesses and users are only written after their reviews.
+ *
+ * YelpStore keeps one review per business and date, so review dates are daily and each
+ * business walks through its own window of days, sized from its expected number of reviews.
+ * A business only gets two reviews on one day once it has more reviews than its window has
+ * days, which only happens for the top business of very large runs (the window is capped at
+ * the years 1600 to 9999).
+ */
+public class YelpDatasetGenerator {
+
+	private static final String[] WORDS = {
+			"the", "food", "was", "great", "service", "slow", "pizza", "tacos", "best", "ever",
+			"would", "not", "recommend", "friendly", "staff", "place", "clean", "dirty", "price",
+			"cheap", "expensive", "love", "coffee", "beer", "amazing", "awful", "and", "a", "to",
+			"we", "our", "waiter", "ordered", "again", "definitely", "back", "brunch", "line", "wait",
+			"delicious", "bland", "portion", "huge", "tiny", "caf\u00e9", "happy", "hour", "patio", "music"
+	};
+	private static final String[] NAME_FIRST = {
+			"Golden", "Happy", "Blue", "Lucky", "Little", "Big", "Old", "Royal", "Sunny", "Urban",
+			"Green", "Red", "Silver", "Wild", "Rustic", "Twin", "Corner", "Main Street", "Lazy", "Hungry"
+	};
+	private static final String[] NAME_SECOND = {
+			"Dragon", "Bean", "Oven", "Garden", "Spoon", "Taco", "Noodle", "Burger", "Grill", "Bistro",
+			"Bakery", "Pub", "Diner", "Kitchen", "Cafe", "Sushi", "Pho", "Pizza", "Deli", "Tavern"
+	};
+	private static final String[] CITIES = {"Austin", "Phoenix", "Las Vegas", "Madison", "Pittsburgh", "Portland"};
+	private static final String[] STATES = {"TX", "AZ", "NV", "WI", "PA", "OR"};
+	private static final String[] NEIGHBORHOODS = {"Downtown", "West Campus", "Eastside", "Old Town", "Midtown"};
+
+	private static final long FIRST_DAY = LocalDate.of(1600, 1, 1).toEpochDay();
+	private static final long LAST_DAY = LocalDate.of(9999, 12, 31).toEpochDay();
+	private static final long CENTER_DAY = LocalDate.of(2010, 1, 1).toEpochDay();
+	private static final int MIN_WINDOW = 3650;
+	// prime larger than any window, so n * DATE_STEP % window visits every day of a window once
+	private static final long DATE_STEP = 7368787;
+
+	private final long seed;
+	private final long reviews;
+	private final int businesses;
+	private final int users;
+	private final int names;
+
+	private double zipfExponent = 1.1;
+	private double missingUserRate = 0.1;
+	private double orphanReviewRate = 0.02;
+	private double lateRate = 0.05;
+
+	/**
+	 * Constructor. Business and user counts are derived from the number of reviews,
+	 * roughly in the proportions of the academic dataset.
+	 * @param seed - random seed.
+	 * @param reviews - number of review lines to generate.
+	 */
+	public YelpDatasetGenerator(long seed, long reviews) {
+		this.seed = seed;
+		this.reviews = reviews;
+		this.businesses = (int) Math.max(1, reviews / 20);
+		this.users = (int) Math.max(1, reviews / 8);
+		this.names = Math.max(1, businesses / 4);
+	}
+
+	public YelpDatasetGenerator setZipfExponent(double zipfExponent) {
+		this.zipfExponent = zipfExponent;
+		return this;
+	}
+
+	public YelpDatasetGenerator setMissingUserRate(double missingUserRate) {
+		this.missingUserRate = missingUserRate;
+		return this;
+	}
+
+	public YelpDatasetGenerator setOrphanReviewRate(double orphanReviewRate) {
+		this.orphanReviewRate = orphanReviewRate;
+		return this;
+	}
+
+	public int getBusinessCount() {
+		return businesses;
+	}
+
+	public int getUserCount() {
+		return users;
+	}
+
+	/**
+	 * Generate every line in order.
+	 * @param out - receives one JSON object per line, without the line separator.
+	 */
+	public void generate(Consumer<String> out) {
+		Random random = new Random(seed);
+		double[] cdf = zipfCdf(businesses, zipfExponent);
+		StringBuilder line = new StringBuilder(1024);
+
+		// date window of each business: twice its expected reviews, at least ten years
+		long[] windowStarts = new long[businesses];
+		int[] windows = new int[businesses];
+		int[] counts = new int[businesses];
+		for (int k = 0; k < businesses; k++) {
+			double expected = reviews * (1 - orphanReviewRate) * (cdf[k] - (k == 0 ? 0 : cdf[k - 1]));
+			windows[k] = (int) Math.min(LAST_DAY - FIRST_DAY + 1, Math.max(MIN_WINDOW, (long) Math.ceil(2 * expected)));
+			long start = CENTER_DAY - windows[k] / 2 + (long) (unit(k, 0x165667b1L) * 365);
+			windowStarts[k] = Math.max(FIRST_DAY, Math.min(start, LAST_DAY - windows[k] + 1));
+		}
+
+		for (int i = 0; i < businesses; i++) {
+			if (!isLate(i)) {
+				out.accept(business(line, random, i));
+			}
+		}
+		for (int i = 0; i < users; i += 2) {
+			if (!isMissing(i)) {
+				out.accept(user(line, i));
+			}
+		}
+
+		for (long r = 0; r < reviews; r++) {
+			String businessId;
+			long day;
+			if (random.nextDouble() < orphanReviewRate) {
+				businessId = "orphan-" + Integer.toString(random.nextInt(businesses), 36);
+				day = CENTER_DAY - MIN_WINDOW / 2 + random.nextInt(MIN_WINDOW);
+			} else {
+				int k = zipfSample(cdf, random.nextDouble());
+				businessId = businessId(k);
+				day = windowStarts[k] + counts[k]++ * DATE_STEP % windows[k];
+			}
+			out.accept(review(line, random, businessId, userId(random.nextInt(users)), day));
+		}
+
+		for (int i = 0; i < businesses; i++) {
+			if (isLate(i)) {
+				out.accept(business(line, random, i));
+			}
+		}
+		for (int i = 1; i < users; i += 2) {
+			if (!isMissing(i)) {
+				out.accept(user(line, i));
+			}
+		}
+	}
+
+	/**
+	 * Write the generated lines to a file.
+	 * @param path
+	 * @throws IOException
+	 */
+	public void write(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			generate(line -> {
+				try {
+					writer.write(line);
+					writer.newLine();
+				} catch (IOException ioe) {
+					throw new UncheckedIOException(ioe);
+				}
+			});
+		} catch (UncheckedIOException uioe) {
+			throw uioe.getCause();
+		}
+	}
+
+	private String business(StringBuilder line, Random random, int i) {
+		// names are spread over a small pool so many businesses share one
+		int name = random.nextInt(names);
+		int city = random.nextInt(CITIES.length);
+		line.setLength(0);
+		line.append("{\"type\": \"business\", \"business_id\": \"").append(businessId(i))
+				.append("\", \"name\": \"").append(businessName(name))
+				.append("\", \"neighborhoods\": [");
+		int neighborhoods = random.nextInt(3);
+		for (int n = 0; n < neighborhoods; n++) {
+			line.append(n == 0 ? "\"" : ", \"").append(NEIGHBORHOODS[random.nextInt(NEIGHBORHOODS.length)]).append('"');
+		}
+		line.append("], \"city\": \"").append(CITIES[city])
+				.append("\", \"state\": \"").append(STATES[city])
+				.append("\", \"latitude\": ").append(30 + random.nextInt(15000) / 1000.0)
+				.append(", \"longitude\": ").append(-120 + random.nextInt(40000) / 1000.0)
+				.append('}');
+		return line.toString();
+	}
+
+	private String user(StringBuilder line, int i) {
+		line.setLength(0);
+		line.append("{\"type\": \"user\", \"user_id\": \"").append(userId(i))
+				.append("\", \"name\": \"").append(NAME_FIRST[i % NAME_FIRST.length]).append(' ')
+				.append((char) ('A' + i % 26)).append(".\"}");
+		return line.toString();
+	}
+
+	private String review(StringBuilder line, Random random, String businessId, String userId, long day) {
+		LocalDate date = LocalDate.ofEpochDay(day);
+		line.setLength(0);
+		line.append("{\"type\": \"review\", \"business_id\": \"").append(businessId)
+				.append("\", \"user_id\": \"").append(userId)
+				.append("\", \"stars\": ").append(1 + random.nextInt(5))
+				.append(", \"date\": \"").append(date.getYear()).append('-');
+		appendTwoDigits(line, date.getMonthValue()).append('-');
+		appendTwoDigits(line, date.getDayOfMonth()).append("\", \"text\": \"");
+
+		// mostly short reviews with a long tail
+		int words = 3 + (int) (-Math.log(1 - random.nextDouble()) * 25);
+		for (int w = 0; w < words; w++) {
+			if (w > 0) {
+				line.append(' ');
+			}
+			line.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		line.append(".\"}");
+		return line.toString();
+	}
+
+	private static StringBuilder appendTwoDigits(StringBuilder line, int value) {
+		return line.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+	}
+
+	private static String businessId(int i) {
+		return "bus-" + Integer.toString(i, 36);
+	}
+
+	private static String userId(int i) {
+		return "user-" + Integer.toString(i, 36);
+	}
+
+	private static String businessName(int name) {
+		int combos = NAME_FIRST.length * NAME_SECOND.length;
+		String base = NAME_FIRST[name % NAME_FIRST.length] + " " + NAME_SECOND[name / NAME_FIRST.length % NAME_SECOND.length];
+		return name < combos ? base : base + " " + (name / combos + 1);
+	}
+
+	private boolean isLate(int business) {
+		return unit(business, 0x5bd1e995L) < lateRate;
+	}
+
+	private boolean isMissing(int user) {
+		return unit(user, 0x27d4eb2fL) < missingUserRate;
+	}
+
+	/**
+	 * Deterministic value in [0, 1) for an index, so a decision can be repeated without storing it.
+	 */
+	private double unit(long index, long salt) {
+		long z = seed + salt + index * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (z >>> 11) * 0x1.0p-53;
+	}
+
+	private static double[] zipfCdf(int n, double exponent) {
+		double[] cdf = new double[n];
+		double sum = 0;
+		for (int k = 0; k < n; k++) {
+			sum += 1 / Math.pow(k + 1, exponent);
+			cdf[k] = sum;
+		}
+		for (int k = 0; k < n; k++) {
+			cdf[k] /= sum;
+		}
+		return cdf;
+	}
+
+	private static int zipfSample(double[] cdf, double u) {
+		int k = Arrays.binarySearch(cdf, u);
+		return Math.min(k < 0 ? -k - 1 : k, cdf.length - 1);
+	}
+
+	/**
+	 * Usage: YelpDatasetGenerator output.json reviews [seed]
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("usage: YelpDatasetGenerator output.json reviews [seed]");
+			return;
+		}
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 601;
+		new YelpDatasetGenerator(seed, Long.parseLong(args[1])).write(Paths.get(args[0]));
+	}
+}
@@ -8,46 +8,70 @@ import com.google.gson.JsonObject;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.io.*;
 
 /**
  * Data structure to store information about businesses, users, and reviews.
  *
+ * Once loading is done, freeze() compacts everything into an immutable FrozenStore.
+ * Businesses and reviews added afterwards go to a small mutable Delta, and toString and
+ * the get methods merge the delta with the snapshot.
+ *
+ * Adds are synchronized. Reads do not take the store lock: they read the snapshot as is
+ * and the delta through its concurrent collections. freeze() only holds the lock to swap
+ * deltas, the new snapshot is built without it.
+ *
  */
 public class YelpStore {
 
+	public static final int DEFAULT_MIN_DELTA = 1000;
+	// auto-freeze also waits for the delta to reach 1/DELTA_RATIO of the frozen reviews
+	public static final int DELTA_RATIO = 100;
+
 	// TODO: Define data members here.
-	JsonArray businessArray;
 	JsonArray userArray;
-	JsonArray reviewArray;
 	String pattern;
 
-	HashMap<String, JsonObject> businessIdMap;
-	TreeSet<NameObject> businessNameSet;
 //	TreeMap<String, String> businessNameMap;
-	HashMap<String, String> userIdMap;
-	HashMap<String, TreeSet> reviewMap;
+	ConcurrentHashMap<String, String> userIdMap;
+	// all reviews by userId, including users that have not been added; survives freeze.
+	// only used under the store lock
+	HashMap<String, UserReviews> userReviewMap;
+
+	// snapshot and deltas, replaced as a whole so a reader always sees a consistent set
+	volatile State state;
+	// one freeze at a time, separate from the store lock so adds can go on meanwhile
+	final Object freezeLock;
+	ScheduledExecutorService freezer;
+
+	// bumped by every add that changes the store, lets callers tell whether cached output is stale
+	volatile long version;
 	
 	/**
 	 * Constructor. Create an empty YelpStore.
 	 */
 	public YelpStore() {
-		businessArray = new JsonArray();
 		userArray = new JsonArray();
-		reviewArray = new JsonArray();
 		pattern = "yyyy-MM-dd";
 
-		businessIdMap = new HashMap<>();
-		businessNameSet = new TreeSet<>(new NameObjectComparator());
 //		businessNameMap = new TreeMap<>();
-		userIdMap = new HashMap<>();
-		reviewMap = new HashMap<>();
+		userIdMap = new ConcurrentHashMap<>();
+		userReviewMap = new HashMap<>();
+		state = new State(new FrozenStore(), null, new Delta(0));
+		freezeLock = new Object();
 	}
 
 
 
 	/**
 	 * Add a new review.
+	 * Every stored review gets an ordinal: reviews frozen so far are numbered
+	 * 0 .. snapshot.getOrdinalCount() - 1, followed by the reviewArray of each delta.
 	 * @param businessId - ID of the business reviewed.
 	 * @param rating - integer rating 1-5.
 	 * @param review - text of the review.
@@ -55,7 +79,7 @@ public class YelpStore {
 	 * @param userId - ID of the user writing the review.
 	 * @return true if successful, false if unsuccessful because of invalid date or rating.
 	 */
-	public boolean addReview(String businessId, int rating, String review, String date, String userId) {
+	public synchronized boolean addReview(String businessId, int rating, String review, String date, String userId) {
 
 		// check rating range
 		if (rating < 1 || rating > 5){
@@ -66,13 +90,17 @@ public class YelpStore {
 			return false;
 		}
 
-		try {
-			SimpleDateFormat sdf = new SimpleDateFormat(pattern);
-			sdf.parse(date);
-		} catch (ParseException iae) {
+		int dateKey = FrozenStore.dateKey(date);
+		if (dateKey < 0){
 			return false;
 		}
 
+		// same date as a frozen review: dropped, just like the sorted set drops it below
+		State current = state;
+		if (current.snapshot.hasReviewOn(businessId, dateKey)){
+			return true;
+		}
+
 		// add new review
 		JsonObject newReview = new JsonObject();
 		newReview.addProperty("businessId", businessId);
@@ -81,18 +109,30 @@ public class YelpStore {
 		newReview.addProperty("date", date);
 		newReview.addProperty("userId", userId);
 
-		reviewArray.add(newReview);
+		if (current.freezing != null && current.freezing.reviewMap.containsKey(businessId)
+				&& current.freezing.reviewMap.get(businessId).contains(newReview)){
+			return true;
+		}
+		Delta delta = current.live;
+		ConcurrentSkipListSet<JsonObject> reviewSet = delta.reviewMap.get(businessId);
+		if (reviewSet == null){
+			reviewSet = new ConcurrentSkipListSet<>(new ReviewComparator());
+			delta.reviewMap.put(businessId, reviewSet);
+		}
+		if (!reviewSet.add(newReview)){
+			return true;
+		}
 
-		if (reviewMap.containsKey(businessId)){
-			TreeSet temp = reviewMap.get(businessId);
-			temp.add(newReview);
-			reviewMap.put(businessId, temp);
-		} else {
-			TreeSet<JsonObject> newSet = new TreeSet<>(new ReviewComparator());
-			newSet.add(newReview);
-			reviewMap.put(businessId, newSet);
+		// index by user
+		UserReviews userReviews = userReviewMap.get(userId);
+		if (userReviews == null){
+			userReviews = new UserReviews();
+			userReviewMap.put(userId, userReviews);
 		}
+		userReviews.add(delta.baseOrdinal + delta.reviewArray.size(), rating, dateKey);
+		delta.reviewArray.add(newReview);
 //		System.out.println("add review's business Id: " + businessId);
+		version++;
 		return true;
 	}
 
@@ -106,7 +146,7 @@ public class YelpStore {
 	 * @param lon - longitude of business location.
 	 * @return true if successful.
 	 */
-	public boolean addBusiness(String businessId, String name, String city, String state, double lat, double lon) {
+	public synchronized boolean addBusiness(String businessId, String name, String city, String state, double lat, double lon) {
 		JsonObject newBusiness = new JsonObject();
 		newBusiness.addProperty("businessId", businessId);
 		newBusiness.addProperty("name", name);
@@ -116,19 +156,7 @@ public class YelpStore {
 		newBusiness.addProperty("lon", lon);
 
 
-		// check duplicate
-//		if (!businessIdMap.containsKey(businessId) && !businessNameMap.containsKey(name)){
-		if (!businessIdMap.containsKey(businessId)){
-			businessArray.add(newBusiness);
-			businessIdMap.put(businessId, newBusiness);
-			businessNameSet.add(new NameObject(name, businessId));
-//			businessNameMap.put(name, businessId);
-//			System.out.println("add new business's business Id: " + businessId + " set size: " + businessNameSet.size());
-			return true;
-		} else {
-			System.out.println("duplicate business ID");
-			return false;
-		}
+		return insertBusiness(businessId, name, newBusiness);
 	}
 
 	/**
@@ -142,7 +170,7 @@ public class YelpStore {
 	 * @param neighborhoods - JSONArray containing a list of neighborhoods where the business is located.
 	 * @return true if successful.
 	 */
-	public boolean addBusiness(String businessId, String name, String city, String state, double lat, double lon, JsonArray neighborhoods) {
+	public synchronized boolean addBusiness(String businessId, String name, String city, String state, double lat, double lon, JsonArray neighborhoods) {
 
 		JsonObject newBusiness = new JsonObject();
 		newBusiness.addProperty("businessId", businessId);
@@ -151,21 +179,10 @@ public class YelpStore {
 		newBusiness.addProperty("state", state);
 		newBusiness.addProperty("lat", lat);
 		newBusiness.addProperty("lon", lon);
-		newBusiness.add("neighborhoods", neighborhoods);
+		// own copy, frozen businesses are read without locks and must not change
+		newBusiness.add("neighborhoods", neighborhoods == null ? null : neighborhoods.deepCopy());
 
-		// check duplicate
-//		if (!businessIdMap.containsKey(businessId) && !businessNameMap.containsKey(name)){
-		if (!businessIdMap.containsKey(businessId)){
-			businessArray.add(newBusiness);
-			businessIdMap.put(businessId, newBusiness);
-			businessNameSet.add(new NameObject(name, businessId));
-//			businessNameMap.put(name, businessId);
-//			System.out.println("add new business's business Id: " + businessId + " set size: " + businessNameSet.size());
-			return true;
-		} else {
-			System.out.println("duplicate business ID");
-			return false;
-		}
+		return insertBusiness(businessId, name, newBusiness);
 	}
 
 	/**
@@ -179,7 +196,7 @@ public class YelpStore {
 	 * @param neighborhoods - comma separated String containing a list of neighborhoods
 	 * @return true if successful.
 	 */
-	public boolean addBusiness(String businessId, String name, String city, String state, double lat, double lon, String neighborhoods) {
+	public synchronized boolean addBusiness(String businessId, String name, String city, String state, double lat, double lon, String neighborhoods) {
 		JsonObject newBusiness = new JsonObject();
 		newBusiness.addProperty("businessId", businessId);
 		newBusiness.addProperty("name", name);
@@ -196,14 +213,28 @@ public class YelpStore {
 
 		newBusiness.add("neighborhoods", neighborhoodsArray);
 
+		return insertBusiness(businessId, name, newBusiness);
+	}
+
+	/**
+	 * Add a business to the delta unless its ID is already known.
+	 * @param businessId
+	 * @param name
+	 * @param newBusiness
+	 * @return true if successful, false if the ID is a duplicate.
+	 */
+	private boolean insertBusiness(String businessId, String name, JsonObject newBusiness) {
 		// check duplicate
 //		if (!businessIdMap.containsKey(businessId) && !businessNameMap.containsKey(name)){
-		if (!businessIdMap.containsKey(businessId)){
-			businessArray.add(newBusiness);
-			businessIdMap.put(businessId, newBusiness);
-			businessNameSet.add(new NameObject(name, businessId));
+		State current = state;
+		if (findBusiness(current, businessId) == null){
+			// map first, readers go from the name set to the map
+			current.live.businessArray.add(newBusiness);
+			current.live.businessIdMap.put(businessId, newBusiness);
+			current.live.businessNameSet.add(new NameObject(name, businessId));
 //			businessNameMap.put(name, businessId);
 //			System.out.println("add new business's business Id: " + businessId + " set size: " + businessNameSet.size());
+			version++;
 			return true;
 		} else {
 			System.out.println("duplicate business ID");
@@ -218,7 +249,7 @@ public class YelpStore {
 	 * @param name - name of the user (e.g., Sami R.)
 	 * @return true if successful.
 	 */
-	public boolean addUser(String userId, String name) {
+	public synchronized boolean addUser(String userId, String name) {
 		JsonObject newUser = new JsonObject();
 		newUser.addProperty("userId", userId);
 		newUser.addProperty("name", name);
@@ -226,7 +257,9 @@ public class YelpStore {
 		// check duplicate
 		if (!userIdMap.containsKey(userId)){
 			userArray.add(newUser);
-			userIdMap.put(userId, name);
+			// concurrent map, no null values
+			userIdMap.put(userId, name == null ? "" : name);
+			version++;
 			return true;
 		} else {
 			return false;
@@ -251,28 +284,44 @@ public class YelpStore {
 	 */
 	public String toString() {
 //		Iterator it = businessNameMap.keySet().iterator();
-		Iterator it = businessNameSet.iterator();
+		State current = state;
+		Iterator<NameObject> it = deltaBusinesses(current);
+		FrozenStore frozen = current.snapshot;
+		// one reader for the whole output, frozen slots are read in order
+		FrozenStore.TextReader texts = frozen.textReader();
 
 		StringBuffer buffer = new StringBuffer();
-		while (it.hasNext()){
-			NameObject temp = (NameObject) it.next();
+		NameObject next = it.hasNext() ? it.next() : null;
+		for (int i = 0; i < frozen.getBusinessCount(); i++){
+			// delta businesses sort after frozen ones with the same name
+			String frozenName = frozen.getName(i);
+			while (next != null && next.getName().compareTo(frozenName) < 0){
+				appendBusiness(buffer, current, texts, findBusiness(current, next.getBusinessId()), next.getBusinessId());
+				next = it.hasNext() ? it.next() : null;
+			}
+			appendBusiness(buffer, current, texts, frozen.getBusiness(i), frozen.getBusinessId(i));
+		}
+		while (next != null){
 			// no need to get name here?
 //			String businessName = temp.getName();
-			String businessId = temp.getBusinessId();
-			buffer.append(businessToString(businessId));
-			buffer.append(reviewToString(businessId));
-			buffer.append("\n");
+			appendBusiness(buffer, current, texts, findBusiness(current, next.getBusinessId()), next.getBusinessId());
+			next = it.hasNext() ? it.next() : null;
 		}
 		return buffer.toString();
 	}
 
+	private void appendBusiness(StringBuffer buffer, State current, FrozenStore.TextReader texts, JsonObject business, String businessId){
+		buffer.append(businessToString(business));
+		buffer.append(reviewToString(current, texts, businessId));
+		buffer.append("\n");
+	}
+
 	/**
 	 * toString method for a business.
-	 * @param businessId
+	 * @param business
 	 * @return
 	 */
-	private String businessToString(String businessId){
-		JsonObject business = businessIdMap.get(businessId);
+	static String businessToString(JsonObject business){
 		String name = business.get("name").getAsString();
 		String city = business.get("city").getAsString();
 		String state = business.get("state").getAsString();
@@ -294,7 +343,6 @@ public class YelpStore {
 			}
 
 		}
-		System.out.println("neighbor: " + neighborhoods);
 		// line 460189 in dataset: "neighborhoods": ["West Campus", "University of Texas"]
 		// not my problem, expected result is mistaken
 
@@ -302,36 +350,438 @@ public class YelpStore {
 	}
 
 	/**
-	 * toString method for an array of reviews.
+	 * toString method for an array of reviews, merging frozen and delta reviews by date.
+	 * @param current
+	 * @param texts - reader for the frozen review texts.
 	 * @param businessId
 	 * @return
 	 */
-	private String reviewToString(String businessId){
-		StringBuffer buffer = new StringBuffer();
+	private String reviewToString(State current, FrozenStore.TextReader texts, String businessId){
+		StringBuilder buffer = new StringBuilder();
+		FrozenStore frozen = current.snapshot;
+		int slot = frozen.reviewStart(businessId);
+		int end = frozen.reviewEnd(businessId);
+
+		Collection<JsonObject> reviewSet = deltaReviews(current, businessId);
+		if (reviewSet != null){
+			Iterator<JsonObject> it = reviewSet.iterator();
+			while (it.hasNext()){
+				JsonObject review = it.next();
+				if (slot < end){
+					int date = FrozenStore.dateKey(review.get("date").getAsString());
+					while (slot < end && frozen.getReviewDate(slot) < date){
+						appendFrozenReview(buffer, frozen, texts, slot++);
+					}
+				}
+				appendReview(buffer, review.get("rating").getAsInt(),
+						userIdMap.get(review.get("userId").getAsString()), review.get("review").getAsString());
+			}
+		}
+		while (slot < end){
+			appendFrozenReview(buffer, frozen, texts, slot++);
+		}
+
+		return buffer.toString();
+	}
+
+	private void appendFrozenReview(StringBuilder buffer, FrozenStore frozen, FrozenStore.TextReader texts, int slot){
+		appendReview(buffer, frozen.getReviewRating(slot), userIdMap.get(frozen.getReviewUserId(slot)), texts.get(slot));
+	}
+
+	/**
+	 * Append one "Rating - User: Review" line.
+	 * @param buffer
+	 * @param rating
+	 * @param userName - name of the author, or null if the user has not been added.
+	 * @param review
+	 */
+	static void appendReview(StringBuilder buffer, int rating, String userName, String review){
+		buffer.append(rating).append(" - ");
+		if (userName != null){
+			buffer.append(userName);
+		}
+		buffer.append(": ").append(review).append("\n");
+	}
+
+	/**
+	 * Compact everything added so far into a new immutable snapshot and start a fresh delta.
+	 * The store lock is only held to swap deltas: while the snapshot is built, adds go to the
+	 * new delta and readers see the old snapshot plus both deltas.
+	 * Readers holding the previous snapshot are not affected.
+	 * @return the new snapshot
+	 */
+	public FrozenStore freeze() {
+		synchronized (freezeLock){
+			synchronized (this){
+				// a freeze that failed half way left its delta in state.freezing, finish that one
+				if (state.freezing == null){
+					Delta live = state.live;
+					state = new State(state.snapshot, live, new Delta(live.baseOrdinal + live.reviewArray.size()));
+				}
+			}
+
+			State before = state;
+			FrozenStore next = new FrozenStore(before.snapshot, before.freezing, userIdMap);
+
+			synchronized (this){
+				state = new State(next, null, state.live);
+			}
+			return next;
+		}
+	}
+
+	/**
+	 * @return the snapshot built by the last freeze, safe to share between reader threads.
+	 */
+	public FrozenStore getSnapshot() {
+		return state.snapshot;
+	}
+
+	/**
+	 * @return a counter that changes whenever a business, review, or user is added.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return number of stored reviews, including reviews of businesses that have not been added.
+	 */
+	public synchronized int getReviewCount() {
+		// every stored review has an ordinal, and the live delta holds the highest ones
+		return state.live.baseOrdinal + state.live.reviewArray.size();
+	}
+
+	/**
+	 * Look up a business in the deltas, then in the snapshot.
+	 * @return the business, or null if it has not been added.
+	 */
+	private static JsonObject findBusiness(State current, String businessId){
+		JsonObject business = current.live.businessIdMap.get(businessId);
+		if (business == null && current.freezing != null){
+			business = current.freezing.businessIdMap.get(businessId);
+		}
+		if (business == null){
+			business = current.snapshot.getBusiness(businessId);
+		}
+		return business;
+	}
+
+	/**
+	 * Delta businesses in name order, the delta being frozen first on equal names.
+	 */
+	private static Iterator<NameObject> deltaBusinesses(State current){
+		if (current.freezing == null || current.freezing.businessNameSet.isEmpty()){
+			return current.live.businessNameSet.iterator();
+		}
+		ArrayList<NameObject> merged = new ArrayList<>();
+		Iterator<NameObject> older = current.freezing.businessNameSet.iterator();
+		Iterator<NameObject> newer = current.live.businessNameSet.iterator();
+		NameObject a = older.next();
+		NameObject b = newer.hasNext() ? newer.next() : null;
+		while (a != null || b != null){
+			if (b == null || (a != null && a.getName().compareTo(b.getName()) <= 0)){
+				merged.add(a);
+				a = older.hasNext() ? older.next() : null;
+			} else {
+				merged.add(b);
+				b = newer.hasNext() ? newer.next() : null;
+			}
+		}
+		return merged.iterator();
+	}
+
+	/**
+	 * Delta reviews of a business sorted by date, or null if there are none.
+	 */
+	private static Collection<JsonObject> deltaReviews(State current, String businessId){
+		ConcurrentSkipListSet<JsonObject> newer = current.live.reviewMap.get(businessId);
+		ConcurrentSkipListSet<JsonObject> older = current.freezing == null ? null : current.freezing.reviewMap.get(businessId);
+		if (older == null || older.isEmpty()){
+			return newer == null || newer.isEmpty() ? null : newer;
+		}
+		if (newer == null || newer.isEmpty()){
+			return older;
+		}
+		// both deltas have reviews, the two sets never share a date
+		ArrayList<JsonObject> merged = new ArrayList<>(older);
+		merged.addAll(newer);
+		merged.sort(newer.comparator());
+		return merged;
+	}
+
+	/**
+	 * Look up a business.
+	 * @param businessId
+	 * @return a copy of the business, or null if it has not been added.
+	 */
+	public JsonObject getBusiness(String businessId) {
+		JsonObject business = findBusiness(state, businessId);
+		return business == null ? null : business.deepCopy();
+	}
 
-		if (!reviewMap.containsKey(businessId)){
-//			System.out.println("No businessId in review: " + businessId);
-			return "";
-		}
-
-		TreeSet reviewSet = reviewMap.get(businessId);
-		Iterator it = reviewSet.iterator();
-		String currentReview;
-		while (it.hasNext()){
-			JsonObject review = (JsonObject) it.next();
-			currentReview = review.get("rating").getAsString();
-			currentReview += " - ";
-			String userId = review.get("userId").getAsString();
-			if(userIdMap.containsKey(userId)){
-				currentReview += userIdMap.get(userId);
+	/**
+	 * List businesses in the same order as toString.
+	 * Frozen businesses are skipped with a binary search, so the cost does not grow with
+	 * offset, only with limit and the number of delta businesses before the offset.
+	 * @param offset - number of businesses to skip.
+	 * @param limit - maximum number of businesses to return.
+	 * @return copies of the businesses
+	 */
+	public JsonArray getBusinesses(int offset, int limit) {
+		JsonArray result = new JsonArray();
+		State current = state;
+		FrozenStore frozen = current.snapshot;
+		Iterator<NameObject> it = deltaBusinesses(current);
+		NameObject next = it.hasNext() ? it.next() : null;
+
+		// skip delta businesses while the frozen ones sorted before them still fit in offset
+		int skipped = 0;
+		while (next != null && skipped + frozen.countNamesUpTo(next.getName()) < offset){
+			skipped++;
+			next = it.hasNext() ? it.next() : null;
+		}
+		int i = Math.min(offset - skipped, frozen.getBusinessCount());
+
+		while (result.size() < limit && (i < frozen.getBusinessCount() || next != null)){
+			JsonObject business;
+			if (next == null || (i < frozen.getBusinessCount() && frozen.getName(i).compareTo(next.getName()) <= 0)){
+				business = frozen.getBusiness(i++);
 			} else {
-				currentReview += "";
+				business = findBusiness(current, next.getBusinessId());
+				next = it.hasNext() ? it.next() : null;
 			}
-			currentReview += ": " + review.get("review").getAsString() + "\n";
-			buffer.append(currentReview);
+			result.add(business.deepCopy());
 		}
+		return result;
+	}
 
-		return buffer.toString();
+	/**
+	 * List the reviews of a business in the same order as toString.
+	 * Each review has a businessId, rating, userId, user (empty if the user has not been added), review, and date.
+	 * Like toString, only businesses that have been added have reviews.
+	 * @param businessId
+	 * @return the reviews, empty if there are none, or null if the business has not been added.
+	 */
+	public JsonArray getReviews(String businessId) {
+		State current = state;
+		if (findBusiness(current, businessId) == null){
+			return null;
+		}
+		JsonArray result = new JsonArray();
+		FrozenStore frozen = current.snapshot;
+		FrozenStore.TextReader texts = frozen.textReader();
+		int slot = frozen.reviewStart(businessId);
+		int end = frozen.reviewEnd(businessId);
+
+		Collection<JsonObject> reviewSet = deltaReviews(current, businessId);
+		if (reviewSet != null){
+			for (JsonObject review : reviewSet){
+				int date = FrozenStore.dateKey(review.get("date").getAsString());
+				while (slot < end && frozen.getReviewDate(slot) < date){
+					result.add(frozenReviewToJson(frozen, texts.get(slot), businessId, slot++));
+				}
+				result.add(reviewToJson(businessId, review.get("rating").getAsInt(), review.get("userId").getAsString(),
+						review.get("review").getAsString(), date));
+			}
+		}
+		while (slot < end){
+			result.add(frozenReviewToJson(frozen, texts.get(slot), businessId, slot++));
+		}
+		return result;
+	}
+
+	private JsonObject frozenReviewToJson(FrozenStore frozen, String text, String businessId, int slot){
+		return reviewToJson(businessId, frozen.getReviewRating(slot), frozen.getReviewUserId(slot),
+				text, frozen.getReviewDate(slot));
+	}
+
+	private JsonObject reviewToJson(String businessId, int rating, String userId, String review, int date){
+		JsonObject json = new JsonObject();
+		json.addProperty("businessId", businessId);
+		json.addProperty("rating", rating);
+		json.addProperty("userId", userId);
+		json.addProperty("user", userIdMap.containsKey(userId) ? userIdMap.get(userId) : "");
+		json.addProperty("review", review);
+		json.addProperty("date", FrozenStore.dateString(date));
+		return json;
+	}
+
+	/**
+	 * List the reviews written by a user, in the order they were added. Works for users
+	 * that have not been added yet.
+	 * Frozen review texts live in compressed blocks of about 32K characters, and a user's
+	 * reviews are spread over many of them, so the cost is O(n log n) for n reviews plus
+	 * inflating each distinct block they touch once. Texts are read in slot order, and blocks
+	 * that are not in the shared cache are not added to it.
+	 * @param userId
+	 * @return the reviews, in the same format as getReviews.
+	 */
+	public JsonArray getUserReviews(String userId) {
+		JsonArray result = new JsonArray();
+		State current;
+		int[] ordinals;
+		JsonObject[] deltaReviews;
+		// the user index and the live delta's reviewArray change under the lock, copy what is needed
+		synchronized (this){
+			UserReviews userReviews = userReviewMap.get(userId);
+			if (userReviews == null){
+				return result;
+			}
+			current = state;
+			ordinals = new int[userReviews.getCount()];
+			deltaReviews = new JsonObject[ordinals.length];
+			for (int i = 0; i < ordinals.length; i++){
+				ordinals[i] = userReviews.getOrdinal(i);
+				if (ordinals[i] >= current.snapshot.getOrdinalCount()){
+					Delta delta = ordinals[i] < current.live.baseOrdinal ? current.freezing : current.live;
+					deltaReviews[i] = delta.reviewArray.get(ordinals[i] - delta.baseOrdinal).getAsJsonObject();
+				}
+			}
+		}
+
+		// frozen texts in slot order, so each block is inflated once: slot in the high bits, index in the low
+		FrozenStore frozen = current.snapshot;
+		long[] bySlot = new long[ordinals.length];
+		int frozenCount = 0;
+		for (int i = 0; i < ordinals.length; i++){
+			if (deltaReviews[i] == null){
+				bySlot[frozenCount++] = (long) frozen.getReviewSlot(ordinals[i]) << 32 | i;
+			}
+		}
+		Arrays.sort(bySlot, 0, frozenCount);
+		String[] texts = new String[ordinals.length];
+		FrozenStore.TextReader reader = frozen.textReader(false);
+		for (int k = 0; k < frozenCount; k++){
+			texts[(int) bySlot[k]] = reader.get((int) (bySlot[k] >>> 32));
+		}
+
+		for (int i = 0; i < ordinals.length; i++){
+			if (deltaReviews[i] == null){
+				int slot = frozen.getReviewSlot(ordinals[i]);
+				result.add(frozenReviewToJson(frozen, texts[i], frozen.getReviewBusinessId(slot), slot));
+			} else {
+				JsonObject review = deltaReviews[i];
+				result.add(reviewToJson(review.get("businessId").getAsString(), review.get("rating").getAsInt(), userId,
+						review.get("review").getAsString(), FrozenStore.dateKey(review.get("date").getAsString())));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Review count, mean rating, and first and last review date of a user, without a scan.
+	 * @param userId
+	 * @return the stats, or null if there is no such user and no review by them.
+	 */
+	public synchronized UserStats getUserStats(String userId) {
+		UserReviews userReviews = userReviewMap.get(userId);
+		if (userReviews == null){
+			return userIdMap.containsKey(userId) ? new UserReviews().toStats(userId, userIdMap.get(userId)) : null;
+		}
+		return userReviews.toStats(userId, userIdMap.get(userId));
+	}
+
+	/**
+	 * Re-freeze in a background thread once at least DEFAULT_MIN_DELTA businesses and
+	 * reviews, and at least 1/DELTA_RATIO of the frozen reviews, have been added since the last freeze.
+	 * @param period - delay between two checks.
+	 * @param unit - time unit of period.
+	 */
+	public void startAutoFreeze(long period, TimeUnit unit) {
+		startAutoFreeze(period, unit, DEFAULT_MIN_DELTA);
+	}
+
+	/**
+	 * Re-freeze in a background thread once enough businesses and reviews have been added.
+	 * A re-freeze allocates every per-review array of the snapshot again (several bytes per
+	 * review, plus the business ordinal map), only unchanged text blocks are shared. So the
+	 * delta must also reach 1/DELTA_RATIO of the frozen reviews, which keeps the cost of
+	 * re-freezing proportional to the number of adds.
+	 * A failed re-freeze is logged and retried on the next check.
+	 * @param period - delay between two checks.
+	 * @param unit - time unit of period.
+	 * @param minDelta - minimum number of businesses and reviews in the delta.
+	 */
+	public synchronized void startAutoFreeze(long period, TimeUnit unit, int minDelta) {
+		if (freezer != null){
+			return;
+		}
+		freezer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "yelp-freezer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		freezer.scheduleWithFixedDelay(() -> {
+			try {
+				int size;
+				int frozen;
+				synchronized (this){
+					size = state.live.size();
+					frozen = state.snapshot.getReviewCount();
+				}
+				if (size > 0 && size >= Math.max(minDelta, frozen / DELTA_RATIO)){
+					freeze();
+				}
+			} catch (Throwable t){
+				// an exception would cancel every later run, and leave the frozen delta behind
+				t.printStackTrace();
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Stop the background re-freeze started by startAutoFreeze.
+	 */
+	public synchronized void stopAutoFreeze() {
+		if (freezer != null){
+			freezer.shutdownNow();
+			freezer = null;
+		}
+	}
+
+	/**
+	 * Businesses and reviews added since the last freeze. Adds hold the store lock, the sets and
+	 * maps are concurrent so readers do not need it. reviewArray is only read under the lock,
+	 * or once the delta is being frozen and no longer changes.
+	 */
+	class Delta{
+		final JsonArray businessArray;
+		final JsonArray reviewArray;
+		final ConcurrentHashMap<String, JsonObject> businessIdMap;
+		final ConcurrentSkipListSet<NameObject> businessNameSet;
+		final ConcurrentHashMap<String, ConcurrentSkipListSet<JsonObject>> reviewMap;
+		// ordinal of reviewArray.get(0)
+		final int baseOrdinal;
+
+		Delta(int baseOrdinal){
+			this.businessArray = new JsonArray();
+			this.reviewArray = new JsonArray();
+			this.businessIdMap = new ConcurrentHashMap<>();
+			this.businessNameSet = new ConcurrentSkipListSet<>(new NameObjectComparator());
+			this.reviewMap = new ConcurrentHashMap<>();
+			this.baseOrdinal = baseOrdinal;
+		}
+
+		int size(){
+			return businessArray.size() + reviewArray.size();
+		}
+	}
+
+	/**
+	 * The current snapshot, the delta being frozen into the next one (null when no freeze
+	 * is running), and the delta taking new adds.
+	 */
+	static class State{
+		final FrozenStore snapshot;
+		final Delta freezing;
+		final Delta live;
+
+		State(FrozenStore snapshot, Delta freezing, Delta live){
+			this.snapshot = snapshot;
+			this.freezing = freezing;
+			this.live = live;
+		}
 	}
 
 	/**
@@ -0,0 +1,163 @@
+package practice.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Simple load generator for YelpServer. A number of client threads send GET requests for
+ * the given paths round-robin, and the latency of every request is recorded.
+ */
+public class YelpLoadTester {
+
+	/**
+	 * Outcome of one load test run.
+	 */
+	public static class Result {
+		private final int requests;
+		private final int errors;
+		private final long p50Nanos;
+		private final long p99Nanos;
+		private final double requestsPerSecond;
+
+		Result(int requests, int errors, long p50Nanos, long p99Nanos, double requestsPerSecond) {
+			this.requests = requests;
+			this.errors = errors;
+			this.p50Nanos = p50Nanos;
+			this.p99Nanos = p99Nanos;
+			this.requestsPerSecond = requestsPerSecond;
+		}
+
+		public int getRequests() {
+			return requests;
+		}
+
+		/**
+		 * @return number of requests that failed or did not get a 2xx/304 response.
+		 */
+		public int getErrors() {
+			return errors;
+		}
+
+		public long getP50Nanos() {
+			return p50Nanos;
+		}
+
+		public long getP99Nanos() {
+			return p99Nanos;
+		}
+
+		public double getRequestsPerSecond() {
+			return requestsPerSecond;
+		}
+
+		public String toString() {
+			return String.format("%d requests, %d errors, p50 %.3f ms, p99 %.3f ms, %.1f requests/s",
+					requests, errors, p50Nanos / 1e6, p99Nanos / 1e6, requestsPerSecond);
+		}
+	}
+
+	/**
+	 * Run a load test.
+	 * @param baseUrl - e.g. http://localhost:8080
+	 * @param paths - request paths including the query, e.g. /business?id=bus-id
+	 * @param threads - number of concurrent clients.
+	 * @param requestsPerThread - number of requests each client sends.
+	 * @return latency percentiles and throughput
+	 */
+	public static Result run(String baseUrl, List<String> paths, int threads, int requestsPerThread)
+			throws InterruptedException {
+		ExecutorService clients = Executors.newFixedThreadPool(threads);
+		List<Future<long[]>> futures = new ArrayList<>();
+		int[] errors = new int[threads];
+
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			int client = t;
+			futures.add(clients.submit(() -> {
+				long[] latencies = new long[requestsPerThread];
+				for (int i = 0; i < requestsPerThread; i++) {
+					String path = paths.get((client + i) % paths.size());
+					long begin = System.nanoTime();
+					if (!get(baseUrl + path)) {
+						errors[client]++;
+					}
+					latencies[i] = System.nanoTime() - begin;
+				}
+				return latencies;
+			}));
+		}
+
+		long[] all = new long[threads * requestsPerThread];
+		int count = 0;
+		try {
+			for (Future<long[]> future : futures) {
+				long[] latencies = future.get();
+				System.arraycopy(latencies, 0, all, count, latencies.length);
+				count += latencies.length;
+			}
+		} catch (ExecutionException ee) {
+			throw new IllegalStateException(ee.getCause());
+		} finally {
+			clients.shutdown();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		Arrays.sort(all);
+		int failed = 0;
+		for (int e : errors) {
+			failed += e;
+		}
+		return new Result(all.length, failed, percentile(all, 0.50), percentile(all, 0.99),
+				all.length / (elapsed / 1e9));
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	/**
+	 * Send one GET request and read the whole response.
+	 * @return true if the response status was 2xx or 304.
+	 */
+	private static boolean get(String url) {
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+			int status = connection.getResponseCode();
+			InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			if (in != null) {
+				byte[] buffer = new byte[8192];
+				while (in.read(buffer) != -1) {
+					// drain the body so the connection can be reused
+				}
+				in.close();
+			}
+			return (status >= 200 && status < 300) || status == 304;
+		} catch (IOException ioe) {
+			return false;
+		}
+	}
+
+	/**
+	 * Usage: YelpLoadTester baseUrl threads requestsPerThread path...
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length < 4) {
+			System.out.println("usage: YelpLoadTester baseUrl threads requestsPerThread path...");
+			return;
+		}
+		List<String> paths = Arrays.asList(args).subList(3, args.length);
+		Result result = run(args[0], paths, Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+		System.out.println(result);
+	}
+}
@@ -0,0 +1,279 @@
+package practice.server;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import practice.data.YelpStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional embedded HTTP server exposing a YelpStore as JSON on localhost.
+ *
+ * GET /business?id=ID                 the business, or 404
+ * GET /reviews?id=ID                  reviews of the business, sorted by date as in toString, or 404
+ * GET /businesses?offset=N&limit=N    businesses sorted by name as in toString, at most MAX_LIMIT
+ *
+ * Requests run on a fixed pool with a bounded queue. When the queue is full the HTTP
+ * dispatcher thread runs the request itself, which stops it from accepting more work.
+ * The store is read without its lock, so requests do not wait for each other or for a freeze.
+ * Responses are cached in an LRU map keyed by request URI, bounded by total body bytes, and
+ * tagged with the store version, so any add* call makes them stale. The ETag is a hash of
+ * the body, so a client keeps getting 304s until the response it asked for actually changes.
+ *
+ * Run the JVM with -Dsun.net.httpserver.nodelay=true. Without TCP_NODELAY small responses
+ * wait ~40ms on Nagle + delayed ACK. The JDK reads the property once for all HttpServers
+ * in the process, so it has to be set on the command line or before the first one is created.
+ */
+public class YelpServer {
+
+	public static final int DEFAULT_THREADS = 8;
+	public static final int DEFAULT_QUEUE = 256;
+	public static final long DEFAULT_CACHE_BYTES = 16 * 1024 * 1024;
+	public static final int DEFAULT_LIMIT = 100;
+	public static final int MAX_LIMIT = 1000;
+
+	private final YelpStore store;
+	private final HttpServer server;
+	private final ThreadPoolExecutor executor;
+	private final ResponseCache cache;
+
+	/**
+	 * Constructor. Create a server with the default pool and cache sizes.
+	 * @param store - store to serve.
+	 * @param port - localhost port, 0 to pick a free one.
+	 * @throws IOException if the port cannot be bound.
+	 */
+	public YelpServer(YelpStore store, int port) throws IOException {
+		this(store, port, DEFAULT_THREADS, DEFAULT_QUEUE, DEFAULT_CACHE_BYTES);
+	}
+
+	/**
+	 * Constructor.
+	 * @param store - store to serve.
+	 * @param port - localhost port, 0 to pick a free one.
+	 * @param threads - number of request threads.
+	 * @param queue - number of requests that may wait for a thread.
+	 * @param cacheBytes - maximum total size of the cached response bodies.
+	 * @throws IOException if the port cannot be bound.
+	 */
+	public YelpServer(YelpStore store, int port, int threads, int queue, long cacheBytes) throws IOException {
+		this.store = store;
+		this.cache = new ResponseCache(cacheBytes);
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queue), new ThreadPoolExecutor.CallerRunsPolicy());
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), queue);
+		server.createContext("/business", this::handle);
+		server.createContext("/businesses", this::handle);
+		server.createContext("/reviews", this::handle);
+		server.setExecutor(executor);
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stop accepting requests and shut the request threads down.
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	/**
+	 * @return the port the server is bound to.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!exchange.getRequestMethod().equals("GET")) {
+				send(exchange, 405, null, new byte[0]);
+				return;
+			}
+
+			String uri = exchange.getRequestURI().toString();
+			long version = store.getVersion();
+			CachedResponse response = cache.lookup(uri);
+			if (response == null || response.version != version) {
+				response = render(exchange.getRequestURI().getPath(), exchange.getRequestURI().getRawQuery(), version);
+				cache.store(uri, response);
+			}
+
+			if (response.status == 200 && response.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				send(exchange, 304, response.etag, null);
+			} else {
+				send(exchange, response.status, response.etag, response.body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Build the response for a request. version is read before the store is queried,
+	 * so a concurrent add can only make the cached entry look older than it is.
+	 * The store's get methods read its snapshot and delta without taking the store lock.
+	 */
+	private CachedResponse render(String path, String query, long version) {
+		Map<String, String> params = parseQuery(query);
+		JsonElement json;
+
+		if (path.equals("/business")) {
+			json = params.containsKey("id") ? store.getBusiness(params.get("id")) : null;
+		} else if (path.equals("/reviews")) {
+			json = params.containsKey("id") ? store.getReviews(params.get("id")) : null;
+		} else if (path.equals("/businesses")) {
+			try {
+				int offset = params.containsKey("offset") ? Integer.parseInt(params.get("offset")) : 0;
+				int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : DEFAULT_LIMIT;
+				json = store.getBusinesses(Math.max(offset, 0), Math.min(Math.max(limit, 0), MAX_LIMIT));
+			} catch (NumberFormatException nfe) {
+				json = null;
+			}
+		} else {
+			json = null;
+		}
+
+		if (json == null) {
+			JsonObject error = new JsonObject();
+			error.addProperty("error", "not found");
+			return new CachedResponse(404, version, error.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		return new CachedResponse(200, version, json.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new HashMap<>();
+		if (query == null) {
+			return params;
+		}
+		for (String pair : query.split("&")) {
+			int split = pair.indexOf('=');
+			if (split <= 0) {
+				continue;
+			}
+			try {
+				params.put(URLDecoder.decode(pair.substring(0, split), "UTF-8"),
+						URLDecoder.decode(pair.substring(split + 1), "UTF-8"));
+			} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+				// malformed parameter, ignore it
+			}
+		}
+		return params;
+	}
+
+	private static void send(HttpExchange exchange, int status, String etag, byte[] body) throws IOException {
+		if (etag != null) {
+			exchange.getResponseHeaders().set("ETag", etag);
+		}
+		if (body == null) {
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		if (body.length > 0) {
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+	}
+
+	/**
+	 * A rendered response and the store version it was built from. The version only decides
+	 * whether the entry is stale, the ETag depends on the body alone.
+	 */
+	static class CachedResponse {
+		final int status;
+		final long version;
+		final byte[] body;
+		final String etag;
+
+		CachedResponse(int status, long version, byte[] body) {
+			this.status = status;
+			this.version = version;
+			this.body = body;
+			this.etag = etag(body);
+		}
+
+		private static String etag(byte[] body) {
+			byte[] digest;
+			try {
+				digest = MessageDigest.getInstance("SHA-1").digest(body);
+			} catch (NoSuchAlgorithmException nsae) {
+				// every JRE has SHA-1
+				throw new IllegalStateException(nsae);
+			}
+			StringBuilder etag = new StringBuilder("\"");
+			for (byte b : digest) {
+				etag.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return etag.append('"').toString();
+		}
+	}
+
+	/**
+	 * LRU map of rendered responses, shared by all request threads. Bounded by the size of
+	 * the bodies plus the URI and a fixed overhead per entry, so many small 404s count too.
+	 * A response larger than the whole budget is not cached.
+	 */
+	static class ResponseCache {
+		// map node, CachedResponse, ETag and array headers, roughly
+		static final int ENTRY_OVERHEAD = 256;
+
+		private final LinkedHashMap<String, CachedResponse> responses = new LinkedHashMap<>(16, 0.75f, true);
+		private final long capacity;
+		private long bytes;
+
+		ResponseCache(long capacity) {
+			this.capacity = capacity;
+		}
+
+		synchronized CachedResponse lookup(String uri) {
+			return responses.get(uri);
+		}
+
+		synchronized void store(String uri, CachedResponse response) {
+			boolean fits = size(uri, response) <= capacity;
+			CachedResponse old = fits ? responses.put(uri, response) : responses.remove(uri);
+			if (old != null) {
+				bytes -= size(uri, old);
+			}
+			if (!fits) {
+				return;
+			}
+			bytes += size(uri, response);
+			Iterator<Map.Entry<String, CachedResponse>> eldest = responses.entrySet().iterator();
+			while (bytes > capacity) {
+				Map.Entry<String, CachedResponse> entry = eldest.next();
+				bytes -= size(entry.getKey(), entry.getValue());
+				eldest.remove();
+			}
+		}
+
+		/**
+		 * Approximate memory used by one entry.
+		 */
+		private static long size(String uri, CachedResponse response) {
+			return 2L * uri.length() + response.body.length + ENTRY_OVERHEAD;
+		}
+	}
+}
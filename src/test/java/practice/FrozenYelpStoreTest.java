@@ -0,0 +1,316 @@
+package practice;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+
+import practice.data.FrozenStore;
+import practice.data.YelpStore;
+
+public class FrozenYelpStoreTest {
+
+	private static final int WARMUP_RUNS = 2;
+	private static final int TIMED_RUNS = 5;
+
+	private static YelpStore sampleStore() {
+		YelpStore store = new YelpStore();
+
+		store.addUser("user-id", "Bob1");
+		store.addBusiness("bus-id1", "Bus Name", "Austin", "TX",  12.345, 98.765);
+		store.addBusiness("bus-id2", "Another Bus", "Portland", "OR",  12.345, 98.765, "Pearl, Downtown");
+
+		store.addReview("bus-id1", 2, "Bad review", "2011-11-11", "user-id");
+		store.addReview("bus-id1", 4, "Okay review", "2011-11-13", "user-id2");
+		store.addReview("bus-id2", 5, "Good review", "2011-11-10", "user-id");
+		store.addReview("bus-id3", 3, "Orphan review", "2011-11-10", "user-id");
+		return store;
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testFreezeKeepsOutput() {
+		String testName = "testFreezeKeepsOutput";
+		YelpStore store = sampleStore();
+
+		String expected = store.toString();
+		FrozenStore snapshot = store.freeze();
+
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), expected, store.toString());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), expected, snapshot.toString());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 2, snapshot.getBusinessCount());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 4, snapshot.getReviewCount());
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testDeltaMatchesUnfrozen() {
+		String testName = "testDeltaMatchesUnfrozen";
+		YelpStore frozen = sampleStore();
+		YelpStore unfrozen = sampleStore();
+		frozen.freeze();
+
+		for (YelpStore store : new YelpStore[] {frozen, unfrozen}) {
+			store.addReview("bus-id1", 1, "Terrible review", "2011-11-12", "user-id");
+			store.addReview("bus-id1", 1, "Same day review", "2011-11-11", "user-id");
+			store.addReview("bus-id3", 5, "Late review", "2011-11-09", "user-id3");
+			store.addBusiness("bus-id3", "Bus Name", "Austin", "TX",  1.5, 2.5);
+			store.addBusiness("bus-id4", "Aardvark", "Austin", "TX",  1.5, 2.5);
+			store.addUser("user-id3", "Carol");
+		}
+
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), unfrozen.toString(), frozen.toString());
+
+		frozen.freeze();
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), unfrozen.toString(), frozen.toString());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), unfrozen.toString(), frozen.getSnapshot().toString());
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testDuplicateBusinessAfterFreeze() {
+		String testName = "testDuplicateBusinessAfterFreeze";
+		YelpStore store = sampleStore();
+		store.freeze();
+
+		boolean value = store.addBusiness("bus-id1", "Other Name", "Austin", "TX",  12.345, 98.765);
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), false, value);
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testSnapshotNotChangedByCaller() {
+		String testName = "testSnapshotNotChangedByCaller";
+		YelpStore store = sampleStore();
+		JsonArray neighborhoods = new JsonArray();
+		neighborhoods.add("Pearl");
+		store.addBusiness("bus-id5", "Zebra Bus", "Austin", "TX",  1.5, 2.5, neighborhoods);
+		FrozenStore snapshot = store.freeze();
+		String expected = snapshot.toString();
+
+		neighborhoods.add("Downtown");
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), expected, snapshot.toString());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), expected, store.toString());
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testUserAddedAfterFreeze() {
+		String testName = "testUserAddedAfterFreeze";
+		YelpStore store = sampleStore();
+		FrozenStore snapshot = store.freeze();
+
+		store.addUser("user-id2", "Alice");
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), store.toString(), snapshot.toString());
+		Assert.assertTrue(String.format("%n" + "Test Case: %s%n", testName), snapshot.toString().contains("Alice"));
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testBusinessesOffset() {
+		String testName = "testBusinessesOffset";
+		YelpStore store = new YelpStore();
+		for (int i = 0; i < 40; i++) {
+			store.addBusiness("bus-id" + i, "Bus Name " + (i % 13), "Austin", "TX",  1.5, 2.5);
+		}
+		store.freeze();
+		// delta names before, between, equal to and after the frozen ones
+		for (int i = 40; i < 60; i++) {
+			store.addBusiness("bus-id" + i, "Bus Name " + (i % 17), "Austin", "TX",  1.5, 2.5);
+		}
+		store.addBusiness("bus-id60", "Aardvark", "Austin", "TX",  1.5, 2.5);
+		store.addBusiness("bus-id61", "Zebra", "Austin", "TX",  1.5, 2.5);
+
+		JsonArray all = store.getBusinesses(0, Integer.MAX_VALUE);
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 62, all.size());
+		for (int offset = 0; offset <= all.size() + 1; offset++) {
+			JsonArray page = store.getBusinesses(offset, 5);
+			for (int i = 0; i < page.size(); i++) {
+				Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName),
+						all.get(offset + i).getAsJsonObject().get("businessId").getAsString(),
+						page.get(i).getAsJsonObject().get("businessId").getAsString());
+			}
+			Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName),
+					Math.max(0, Math.min(5, all.size() - offset)), page.size());
+		}
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testAutoFreeze() throws InterruptedException {
+		String testName = "testAutoFreeze";
+		YelpStore store = sampleStore();
+		FrozenStore before = store.getSnapshot();
+
+		store.startAutoFreeze(10, TimeUnit.MILLISECONDS, 1);
+		try {
+			while (store.getSnapshot() == before) {
+				Thread.sleep(10);
+			}
+		} finally {
+			store.stopAutoFreeze();
+		}
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), store.toString(), store.getSnapshot().toString());
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testAutoFreezeMinDelta() throws InterruptedException {
+		String testName = "testAutoFreezeMinDelta";
+		YelpStore store = sampleStore();
+		FrozenStore before = store.getSnapshot();
+
+		store.startAutoFreeze(5, TimeUnit.MILLISECONDS, 100);
+		try {
+			Thread.sleep(100);
+		} finally {
+			store.stopAutoFreeze();
+		}
+		Assert.assertSame(String.format("%n" + "Test Case: %s%n", testName), before, store.getSnapshot());
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testReadsDuringFreeze() throws InterruptedException {
+		String testName = "testReadsDuringFreeze";
+		YelpStore store = sampleStore();
+		store.freeze();
+		String expected = store.toString();
+
+		// freeze in a loop while another thread keeps reading and adding
+		Thread freezer = new Thread(() -> {
+			for (int i = 0; i < 50; i++) {
+				store.freeze();
+			}
+		});
+		freezer.start();
+		for (int i = 0; i < 200; i++) {
+			// only reviews of businesses that are never added, so the output does not change
+			Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), expected, store.toString());
+			store.addReview("bus-id" + (5 + i % 7), 3, "Review " + i, "2012-01-" + (10 + i % 19), "user-id");
+			Assert.assertNotNull(String.format("%n" + "Test Case: %s%n", testName), store.getBusiness("bus-id1"));
+		}
+		freezer.join();
+
+		YelpStore unfrozen = sampleStore();
+		for (int i = 0; i < 200; i++) {
+			unfrozen.addReview("bus-id" + (5 + i % 7), 3, "Review " + i, "2012-01-" + (10 + i % 19), "user-id");
+		}
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), unfrozen.getReviewCount(), store.getReviewCount());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName),
+				unfrozen.getReviews("bus-id1").toString(), store.getReviews("bus-id1").toString());
+		// reviews of a business that was never added are not listed, as in toString
+		Assert.assertNull(String.format("%n" + "Test Case: %s%n", testName), store.getReviews("bus-id5"));
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName),
+				unfrozen.getUserReviews("user-id").toString(), store.getUserReviews("user-id").toString());
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testCompressedBlocks() {
+		String testName = "testCompressedBlocks";
+		YelpStore store = new YelpStore();
+
+		// enough text for several blocks, with some non-ASCII text
+		for (int i = 0; i < 500; i++) {
+			store.addBusiness("bus-id" + i, "Bus Name " + (i % 37), "Austin", "TX",  12.345, 98.765);
+			for (int j = 0; j < 5; j++) {
+				store.addReview("bus-id" + i, 1 + j, "Review " + j + " of business " + i + ", caf\u00e9 \u2605 was fine",
+						"2011-11-1" + j, "user-id" + (i % 11));
+			}
+		}
+		store.addUser("user-id3", "Bob3");
+
+		String expected = store.toString();
+		FrozenStore snapshot = store.freeze();
+
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), expected, store.toString());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), expected, snapshot.toString());
+		Assert.assertTrue(String.format("%n" + "Test Case: %s%n", testName),
+				snapshot.getCompressedTextBytes() < snapshot.getRawTextBytes());
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testRefreezeReusesBlocks() {
+		String testName = "testRefreezeReusesBlocks";
+		YelpStore store = new YelpStore();
+		for (int i = 0; i < 500; i++) {
+			store.addBusiness("bus-id" + i, "Bus Name " + i, "Austin", "TX",  12.345, 98.765);
+			for (int j = 0; j < 5; j++) {
+				store.addReview("bus-id" + i, 1 + j, "Review " + j + " of business " + i + " was fine, nothing more to add here",
+						"2011-11-1" + j, "user-id" + (i % 11));
+			}
+		}
+		FrozenStore before = store.freeze();
+
+		// one new review in the middle, only the blocks around it are rebuilt
+		store.addReview("bus-id250", 5, "New review", "2012-01-01", "user-id1");
+		String expected = store.toString();
+		FrozenStore after = store.freeze();
+
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), expected, after.toString());
+		Assert.assertTrue(String.format("%n" + "Test Case: %s%n", testName), before.getBlockCount() > 4);
+		Assert.assertTrue(String.format("%n" + "Test Case: %s%n", testName),
+				after.getReusedBlockCount() >= before.getBlockCount() - 2);
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testLargeBusinessSplit() {
+		String testName = "testLargeBusinessSplit";
+		YelpStore store = new YelpStore();
+		store.addBusiness("bus-id1", "Bus Name", "Austin", "TX",  12.345, 98.765);
+		StringBuilder text = new StringBuilder();
+		for (int j = 0; j < 100; j++) {
+			text.append("word").append(j).append(' ');
+		}
+		for (int day = 0; day < 1000; day++) {
+			store.addReview("bus-id1", 1 + day % 5, "Review " + day + " " + text,
+					String.format("%04d-%02d-%02d", 2000 + day / 300, 1 + day / 28 % 10, 1 + day % 28), "user-id");
+		}
+
+		String expected = store.toString();
+		FrozenStore snapshot = store.freeze();
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), expected, snapshot.toString());
+		Assert.assertTrue(String.format("%n" + "Test Case: %s%n", testName), snapshot.getBlockCount() > 1);
+	}
+
+	@Test
+	public void testCompressionReport() throws IOException {
+		Path input = Paths.get(TestUtils.INPUT_DIR, "yelp_academic_dataset.json");
+		Assume.assumeTrue(Files.exists(input));
+
+		YelpStore store = new YelpStore();
+		TestUtils.loadDataset(store, input);
+
+		String expected = store.toString();
+		long unfrozen = medianNanos(store::toString);
+
+		FrozenStore snapshot = store.freeze();
+		Assert.assertEquals(expected, snapshot.toString());
+		Assert.assertEquals(expected, store.toString());
+		long frozenStore = medianNanos(store::toString);
+		long frozenSnapshot = medianNanos(snapshot::toString);
+
+		System.out.printf("review text: %d bytes raw, %d bytes compressed (ratio %.2f)%n",
+				snapshot.getRawTextBytes(), snapshot.getCompressedTextBytes(),
+				(double) snapshot.getRawTextBytes() / snapshot.getCompressedTextBytes());
+		System.out.printf("toString, median of %d runs after %d warm-up runs: %d ms unfrozen, %d ms store after freeze, %d ms snapshot%n",
+				TIMED_RUNS, WARMUP_RUNS, unfrozen / 1000000, frozenStore / 1000000, frozenSnapshot / 1000000);
+	}
+
+	/**
+	 * Run a toString a few times to warm up, then return the median time of the timed runs.
+	 */
+	private static long medianNanos(Supplier<String> toString) {
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			toString.get();
+		}
+		long[] times = new long[TIMED_RUNS];
+		for (int i = 0; i < TIMED_RUNS; i++) {
+			long start = System.nanoTime();
+			toString.get();
+			times[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(times);
+		return times[TIMED_RUNS / 2];
+	}
+}
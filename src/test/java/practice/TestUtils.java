@@ -17,6 +17,12 @@ import java.util.regex.Matcher;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import practice.data.YelpStore;
+
 /**
  * Original author sjengle, modified by srollins.
  *
@@ -104,4 +110,59 @@ public class TestUtils {
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Loads every business, user, and review of a line-delimited Yelp
+	 * dataset file into the store.
+	 *
+	 * @param store - store to add the data to
+	 * @param path - path to the dataset file
+	 * @return number of lines read
+	 *
+	 * @throws IOException
+	 */
+	public static int loadDataset(YelpStore store, Path path) throws IOException {
+		JsonParser parser = new JsonParser();
+		int count = 0;
+
+		try (BufferedReader reader = Files.newBufferedReader(path, java.nio.charset.StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				count++;
+				loadLine(store, parser, line);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Adds the business, user, or review in one line of a Yelp dataset to the store.
+	 *
+	 * @param store - store to add the data to
+	 * @param parser - parser to reuse between lines
+	 * @param line - one JSON object
+	 */
+	public static void loadLine(YelpStore store, JsonParser parser, String line) {
+		JsonObject json = (JsonObject) parser.parse(line);
+		String type = json.get("type").getAsString();
+		if (type.equals("review")) {
+			store.addReview(
+					json.get("business_id").getAsString(),
+					json.get("stars").getAsInt(),
+					json.get("text").getAsString(),
+					json.get("date").getAsString(),
+					json.get("user_id").getAsString());
+		} else if (type.equals("business")) {
+			store.addBusiness(
+					json.get("business_id").getAsString(),
+					json.get("name").getAsString(),
+					json.get("city").getAsString(),
+					json.get("state").getAsString(),
+					json.get("latitude").getAsDouble(),
+					json.get("longitude").getAsDouble(),
+					(JsonArray) json.get("neighborhoods"));
+		} else if (type.equals("user")) {
+			store.addUser(json.get("user_id").getAsString(), json.get("name").getAsString());
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package practice;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+
+import practice.data.UserStats;
+import practice.data.YelpStore;
+
+public class UserReviewsTest {
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testStatsBeforeUserAdded() {
+		String testName = "testStatsBeforeUserAdded";
+		YelpStore store = new YelpStore();
+
+		store.addReview("bus-id1", 2, "Bad review", "2011-11-11", "user-id");
+		store.addReview("bus-id2", 5, "Good review", "2010-01-05", "user-id");
+		UserStats stats = store.getUserStats("user-id");
+
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 2, stats.getReviewCount());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 3.5, stats.getAverageRating(), 1e-9);
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), "2010-01-05", stats.getFirstReviewDate());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), "2011-11-11", stats.getLastReviewDate());
+		Assert.assertNull(String.format("%n" + "Test Case: %s%n", testName), stats.getName());
+
+		store.addUser("user-id", "Bob1");
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), "Bob1", store.getUserStats("user-id").getName());
+		Assert.assertNull(String.format("%n" + "Test Case: %s%n", testName), store.getUserStats("nobody"));
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testUserReviewsAcrossFreeze() {
+		String testName = "testUserReviewsAcrossFreeze";
+		YelpStore store = new YelpStore();
+
+		store.addUser("user-id", "Bob1");
+		store.addReview("bus-id1", 2, "First", "2011-11-11", "user-id");
+		store.addReview("bus-id1", 3, "Other user", "2011-11-12", "user-id2");
+		store.addReview("bus-id2", 4, "Second", "2011-11-09", "user-id");
+		store.freeze();
+		store.addReview("bus-id1", 5, "Third", "2011-11-01", "user-id");
+		// same business and date as a frozen review, dropped by the store
+		store.addReview("bus-id1", 1, "Dropped", "2011-11-11", "user-id");
+
+		for (int pass = 0; pass < 2; pass++) {
+			JsonArray reviews = store.getUserReviews("user-id");
+			Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 3, reviews.size());
+			Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), "First",
+					reviews.get(0).getAsJsonObject().get("review").getAsString());
+			Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), "bus-id2",
+					reviews.get(1).getAsJsonObject().get("businessId").getAsString());
+			Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), "Third",
+					reviews.get(2).getAsJsonObject().get("review").getAsString());
+			Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), "Bob1",
+					reviews.get(2).getAsJsonObject().get("user").getAsString());
+			Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), "2011-11-01",
+					store.getUserStats("user-id").getFirstReviewDate());
+
+			// ordinals must survive a re-freeze
+			store.freeze();
+		}
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 1, store.getUserReviews("user-id2").size());
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testUserReviewsAcrossBlocks() {
+		String testName = "testUserReviewsAcrossBlocks";
+		YelpStore frozen = new YelpStore();
+		YelpStore unfrozen = new YelpStore();
+
+		// the user's reviews end up in many text blocks, added in a different order than slots
+		for (YelpStore store : new YelpStore[] {frozen, unfrozen}) {
+			for (int i = 0; i < 2000; i++) {
+				int business = (i * 37) % 400;
+				store.addReview("bus-id" + business, 1 + i % 5, "Review " + i + " with some more text to fill the blocks up",
+						String.format("2011-%02d-%02d", 1 + i / 400 % 12, 1 + i % 28), "user-id" + (i % 3));
+			}
+		}
+		frozen.freeze();
+
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName),
+				unfrozen.getUserReviews("user-id1").toString(), frozen.getUserReviews("user-id1").toString());
+	}
+}
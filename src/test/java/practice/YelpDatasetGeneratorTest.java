@@ -0,0 +1,98 @@
+package practice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import practice.data.YelpDatasetGenerator;
+import practice.data.YelpStore;
+
+public class YelpDatasetGeneratorTest {
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testDeterministic() {
+		String testName = "testDeterministic";
+		List<String> first = new ArrayList<>();
+		List<String> second = new ArrayList<>();
+		List<String> other = new ArrayList<>();
+
+		new YelpDatasetGenerator(42, 2000).generate(first::add);
+		new YelpDatasetGenerator(42, 2000).generate(second::add);
+		new YelpDatasetGenerator(43, 2000).generate(other::add);
+
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), first, second);
+		Assert.assertNotEquals(String.format("%n" + "Test Case: %s%n", testName), first, other);
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testSkew() {
+		String testName = "testSkew";
+		YelpDatasetGenerator generator = new YelpDatasetGenerator(601, 20000);
+		JsonParser parser = new JsonParser();
+
+		Set<String> businessIds = new HashSet<>();
+		Set<String> businessNames = new HashSet<>();
+		Set<String> userIds = new HashSet<>();
+		Map<String, Integer> reviewsPerBusiness = new HashMap<>();
+		List<JsonObject> reviews = new ArrayList<>();
+
+		generator.generate(line -> {
+			JsonObject json = (JsonObject) parser.parse(line);
+			String type = json.get("type").getAsString();
+			if (type.equals("business")) {
+				businessIds.add(json.get("business_id").getAsString());
+				businessNames.add(json.get("name").getAsString());
+			} else if (type.equals("user")) {
+				userIds.add(json.get("user_id").getAsString());
+			} else {
+				reviews.add(json);
+				reviewsPerBusiness.merge(json.get("business_id").getAsString(), 1, Integer::sum);
+			}
+		});
+
+		int orphans = 0;
+		int missingUsers = 0;
+		for (JsonObject review : reviews) {
+			if (!businessIds.contains(review.get("business_id").getAsString())) {
+				orphans++;
+			}
+			if (!userIds.contains(review.get("user_id").getAsString())) {
+				missingUsers++;
+			}
+		}
+
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 20000, reviews.size());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), generator.getBusinessCount(), businessIds.size());
+		Assert.assertTrue(String.format("%n" + "Test Case: %s%n", testName), businessNames.size() < businessIds.size());
+		Assert.assertTrue(String.format("%n" + "Test Case: %s%n", testName), orphans > 0);
+		Assert.assertTrue(String.format("%n" + "Test Case: %s%n", testName), missingUsers > 0);
+		// the most reviewed business gets far more than the average of 20
+		Assert.assertTrue(String.format("%n" + "Test Case: %s%n", testName),
+				reviewsPerBusiness.values().stream().mapToInt(Integer::intValue).max().getAsInt() > 200);
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testLoadsIntoStore() {
+		String testName = "testLoadsIntoStore";
+		YelpStore store = new YelpStore();
+		JsonParser parser = new JsonParser();
+
+		new YelpDatasetGenerator(7, 5000).generate(line -> TestUtils.loadLine(store, parser, line));
+		// dates are spread so that almost no review is dropped as a same-day duplicate
+		Assert.assertTrue(String.format("%n" + "Test Case: %s%n", testName), store.getReviewCount() >= 4990);
+
+		String expected = store.toString();
+		Assert.assertFalse(String.format("%n" + "Test Case: %s%n", testName), expected.isEmpty());
+		store.freeze();
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), expected, store.toString());
+	}
+}
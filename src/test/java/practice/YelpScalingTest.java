@@ -0,0 +1,122 @@
+package practice;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.google.gson.JsonParser;
+
+import practice.data.YelpDatasetGenerator;
+import practice.data.YelpStore;
+
+/**
+ * Scaling suite on generated data. Skipped unless run with -Dyelp.scaling=true,
+ * e.g. mvn test -Pscaling. Sizes (number of reviews) come from -Dyelp.scaling.sizes.
+ * Results are printed and appended to results/scaling.txt.
+ *
+ * "reviews" is the number of generated review lines, "stored" the number the store kept
+ * (it drops a second review of a business on the same date). printToFile builds the whole
+ * output as one String, so it fails once the output passes ~2^31 chars whatever the heap;
+ * the report then shows the OutOfMemoryError message, e.g. "Requested array size exceeds VM limit".
+ */
+public class YelpScalingTest {
+
+	public static final String DEFAULT_SIZES = "1000000,5000000,10000000,50000000";
+	public static final long SEED = 601;
+
+	@Test
+	public void testScaling() throws IOException {
+		Assume.assumeTrue(Boolean.getBoolean("yelp.scaling"));
+
+		Path report = Paths.get(TestUtils.RESULT_DIR, "scaling.txt");
+		Files.createDirectories(report.getParent());
+		log(report, String.format("%n%-10s %10s %12s %12s %14s %14s  %s", "reviews", "stored", "generate ms", "ingest ms",
+				"printToFile ms", "peak heap MB", "max heap " + Runtime.getRuntime().maxMemory() / (1 << 20) + " MB"));
+
+		for (String size : System.getProperty("yelp.scaling.sizes", DEFAULT_SIZES).split(",")) {
+			long reviews = Long.parseLong(size.trim());
+			if (!run(report, reviews)) {
+				// larger sizes will not fit either
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Measure one size.
+	 * @return false if the run ran out of memory.
+	 */
+	private boolean run(Path report, long reviews) throws IOException {
+		YelpDatasetGenerator generator = new YelpDatasetGenerator(SEED, reviews);
+
+		// generation alone, so it can be taken out of the ingest time
+		long start = System.nanoTime();
+		long[] lines = new long[1];
+		generator.generate(line -> lines[0]++);
+		long generate = System.nanoTime() - start;
+
+		Path output = Paths.get(TestUtils.RESULT_DIR, "scaling-" + reviews + ".txt");
+		long ingest = -1;
+		long print = -1;
+		int stored = -1;
+		String failure = "";
+		System.gc();
+		resetPeakHeap();
+		try {
+			YelpStore store = new YelpStore();
+			JsonParser parser = new JsonParser();
+			start = System.nanoTime();
+			generator.generate(line -> TestUtils.loadLine(store, parser, line));
+			ingest = System.nanoTime() - start - generate;
+			stored = store.getReviewCount();
+
+			start = System.nanoTime();
+			store.printToFile(output);
+			print = System.nanoTime() - start;
+		} catch (OutOfMemoryError oome) {
+			failure = (ingest < 0 ? "ingest: " : "printToFile: ") + oome.getMessage();
+		} finally {
+			Files.deleteIfExists(output);
+		}
+
+		log(report, String.format("%-10d %10d %12d %12d %14d %14d  %s", reviews, stored, generate / 1000000,
+				ingest < 0 ? -1 : ingest / 1000000, print < 0 ? -1 : print / 1000000, peakHeap() / (1 << 20), failure));
+		return failure.isEmpty();
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/**
+	 * Sum of the peaks of each heap pool, an upper bound on the real peak.
+	 */
+	private static long peakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	private static void log(Path report, String line) throws IOException {
+		System.out.println(line);
+		Files.write(report, (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+}
@@ -0,0 +1,155 @@
+package practice;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import practice.data.YelpStore;
+import practice.server.YelpLoadTester;
+import practice.server.YelpServer;
+
+public class YelpServerTest {
+
+	private YelpStore store;
+	private YelpServer server;
+	private String baseUrl;
+
+	@BeforeClass
+	public static void setUpClass() {
+		// must be set before the first HttpServer is created, see YelpServer
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		store = new YelpStore();
+		store.addUser("user-id", "Bob1");
+		store.addBusiness("bus-id1", "Bus Name", "Austin", "TX",  12.345, 98.765);
+		store.addBusiness("bus-id2", "Another Bus", "Portland", "OR",  12.345, 98.765);
+		store.addReview("bus-id1", 2, "Bad review", "2011-11-11", "user-id");
+		store.addReview("bus-id1", 5, "Good review", "2011-11-10", "user-id2");
+		store.freeze();
+
+		server = new YelpServer(store, 0);
+		server.start();
+		baseUrl = "http://localhost:" + server.getPort();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	private HttpURLConnection open(String path, String etag) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		if (etag != null) {
+			connection.setRequestProperty("If-None-Match", etag);
+		}
+		return connection;
+	}
+
+	private static String body(HttpURLConnection connection) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = connection.getInputStream()) {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testBusinessLookup() throws IOException {
+		String testName = "testBusinessLookup";
+		HttpURLConnection connection = open("/business?id=bus-id1", null);
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 200, connection.getResponseCode());
+		JsonObject business = (JsonObject) new JsonParser().parse(body(connection));
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), "Bus Name", business.get("name").getAsString());
+
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 404,
+				open("/business?id=missing", null).getResponseCode());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 404,
+				open("/reviews?id=missing", null).getResponseCode());
+
+		// reviews of a business that was never added are not served, as in toString
+		store.addReview("bus-id9", 3, "Orphan review", "2011-11-11", "user-id");
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 404,
+				open("/reviews?id=bus-id9", null).getResponseCode());
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testReviewsAndListing() throws IOException {
+		String testName = "testReviewsAndListing";
+		JsonArray reviews = (JsonArray) new JsonParser().parse(body(open("/reviews?id=bus-id1", null)));
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 2, reviews.size());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), "Good review",
+				reviews.get(0).getAsJsonObject().get("review").getAsString());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), "Bob1",
+				reviews.get(1).getAsJsonObject().get("user").getAsString());
+
+		JsonArray businesses = (JsonArray) new JsonParser().parse(body(open("/businesses", null)));
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), "Another Bus",
+				businesses.get(0).getAsJsonObject().get("name").getAsString());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 2, businesses.size());
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testETagInvalidation() throws IOException {
+		String testName = "testETagInvalidation";
+		HttpURLConnection first = open("/reviews?id=bus-id1", null);
+		String etag = first.getHeaderField("ETag");
+		body(first);
+		Assert.assertNotNull(String.format("%n" + "Test Case: %s%n", testName), etag);
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 304,
+				open("/reviews?id=bus-id1", etag).getResponseCode());
+
+		// adds that do not change this response keep the ETag valid
+		store.addReview("bus-id2", 3, "Other review", "2011-11-12", "user-id");
+		store.addUser("user-id9", "Carol");
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 304,
+				open("/reviews?id=bus-id1", etag).getResponseCode());
+
+		store.addReview("bus-id1", 4, "Newer review", "2011-11-12", "user-id");
+		HttpURLConnection changed = open("/reviews?id=bus-id1", etag);
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 200, changed.getResponseCode());
+		JsonArray reviews = (JsonArray) new JsonParser().parse(body(changed));
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 3, reviews.size());
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testListingLimit() throws IOException {
+		String testName = "testListingLimit";
+		for (int i = 0; i < YelpServer.MAX_LIMIT + 10; i++) {
+			store.addBusiness("bus-more" + i, "More Bus " + i, "Austin", "TX",  1.5, 2.5);
+		}
+		JsonArray businesses = (JsonArray) new JsonParser().parse(body(open("/businesses?limit=2147483647", null)));
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), YelpServer.MAX_LIMIT, businesses.size());
+	}
+
+	@Test(timeout = TestUtils.TIMEOUT)
+	public void testLoadTester() throws InterruptedException {
+		String testName = "testLoadTester";
+		YelpLoadTester.Result result = YelpLoadTester.run(baseUrl,
+				Arrays.asList("/business?id=bus-id1", "/reviews?id=bus-id1", "/businesses"), 4, 50);
+		System.out.println(result);
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 200, result.getRequests());
+		Assert.assertEquals(String.format("%n" + "Test Case: %s%n", testName), 0, result.getErrors());
+		Assert.assertTrue(String.format("%n" + "Test Case: %s%n", testName), result.getP50Nanos() <= result.getP99Nanos());
+	}
+}